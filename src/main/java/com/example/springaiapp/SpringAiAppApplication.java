@@ -2,11 +2,14 @@ package com.example.springaiapp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Главный класс Spring Boot приложения с поддержкой Spring AI и Ollama
  */
 @SpringBootApplication
+// периодическая очистка устаревших строк кэшей в бд
+@EnableScheduling
 public class SpringAiAppApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,48 @@
+package com.example.springaiapp.api.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.springaiapp.api.dto.IngestionProgressDto;
+import com.example.springaiapp.api.mapper.IngestionProgressMapper;
+import com.example.springaiapp.domain.service.IngestionJobService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * REST API контроллер фоновой загрузки базы знаний
+ */
+@RestController
+@RequestMapping("/api/ingestion")
+@RequiredArgsConstructor
+public class ApiIngestionController {
+
+    private final IngestionJobService ingestionJobService;
+    private final IngestionProgressMapper ingestionProgressMapper;
+
+    /**
+     * Прогресс загрузки: файлы загружены/в очереди, чанков в секунду, ETA
+     *
+     * @return снимок прогресса
+     */
+    @GetMapping
+    public ResponseEntity<IngestionProgressDto> getProgress() {
+        return ResponseEntity.ok(ingestionProgressMapper.toDto(ingestionJobService.getProgress()));
+    }
+
+    /**
+     * Повторный запуск загрузки (например, после добавления файлов)
+     *
+     * @return 202 если загрузка запущена, 409 если уже идет или отключена
+     */
+    @PostMapping
+    public ResponseEntity<IngestionProgressDto> start() {
+        final var started = ingestionJobService.start();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(ingestionProgressMapper.toDto(ingestionJobService.getProgress()));
+    }
+}
@@ -2,9 +2,12 @@ package com.example.springaiapp.api.controller;
 
 import com.example.springaiapp.api.dto.ResponeMessageDto;
 import com.example.springaiapp.api.dto.SendMessageRequest;
+import com.example.springaiapp.domain.service.IngestionJobService;
 import com.example.springaiapp.domain.service.MessageService;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,16 +22,23 @@ import java.util.List;
 @RequestMapping("/api/messages")
 @RequiredArgsConstructor
 public class ApiMessageController {
+    private static final int MAX_HISTORY_LIMIT = 500;
     
     private final MessageService messageService;
+    private final IngestionJobService ingestionJobService;
     
     /**
      * Отправка сообщения
      * @param request данные сообщения
-     * @return ответ AI
+     * @return ответ AI или 503, пока идет первая загрузка базы знаний
      */
     @PostMapping
     public ResponseEntity<ResponeMessageDto> sendMessage(@Valid @RequestBody SendMessageRequest request) {
+        if (!ingestionJobService.isKnowledgeBaseReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
         try {
             return ResponseEntity.ok( messageService.sendMessage(request));
         } catch (Exception e) {
@@ -51,4 +61,34 @@ public class ApiMessageController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    /**
+     * История сообщений чата по курсору
+     * Без курсора - последние сообщения, before - предыдущая страница, after - следующая
+     * @param chatId идентификатор чата
+     * @param before идентификатор сообщения, перед которым нужна история
+     * @param after  идентификатор сообщения, после которого нужна история
+     * @param limit  размер страницы
+     * @return сообщения от старых к новым
+     */
+    @GetMapping("/chat/{chatId}/history")
+    public ResponseEntity<List<ResponeMessageDto>> getHistory(@PathVariable Long chatId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int limit) {
+        if (before != null && after != null || limit < 1 || limit > MAX_HISTORY_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            if (before != null) {
+                return ResponseEntity.ok(messageService.getMessagesBefore(chatId, before, limit));
+            }
+            if (after != null) {
+                return ResponseEntity.ok(messageService.getMessagesAfter(chatId, after, limit));
+            }
+            return ResponseEntity.ok(messageService.getLatestMessages(chatId, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
 }
@@ -1,14 +1,17 @@
 package com.example.springaiapp.api.controller;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.example.springaiapp.api.dto.SendMessageRequest;
+import com.example.springaiapp.domain.service.IngestionJobService;
 import com.example.springaiapp.domain.service.MessageService;
 
 import lombok.RequiredArgsConstructor;
@@ -25,17 +28,21 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class StreamController {
     private final MessageService messageService;
+    private final IngestionJobService ingestionJobService;
 
 
     /**
      * Отправка сообщения с потоковым ответом через SSE
      * 
      * @param request данные сообщения
-     * @return SSE поток для стриминга ответа
+     * @return SSE поток для стриминга ответа, 503 пока идет первая загрузка базы знаний
      */
     @PostMapping(value = "/messages", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter streamMessage(@RequestBody SendMessageRequest request) {
         log.info("Получен запрос на стриминг: {}", request);
+        if (!ingestionJobService.isKnowledgeBaseReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Knowledge base is loading");
+        }
         return messageService.generateStreamingResponse(request);
     }
 }
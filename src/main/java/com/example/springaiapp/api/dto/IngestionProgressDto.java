@@ -0,0 +1,31 @@
+package com.example.springaiapp.api.dto;
+
+import java.time.Instant;
+
+import com.example.springaiapp.domain.model.IngestionState;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO прогресса загрузки базы знаний
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionProgressDto {
+    private IngestionState state;
+    private boolean knowledgeBaseReady;
+    private long filesTotal;
+    private long filesSkipped;
+    private long filesDone;
+    private long filesPending;
+    private long filesFailed;
+    private long chunksWritten;
+    private long chunksDeleted;
+    private double chunksPerSecond;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private Long etaSeconds;
+}
@@ -0,0 +1,20 @@
+package com.example.springaiapp.api.mapper;
+
+import org.mapstruct.Mapper;
+
+import com.example.springaiapp.api.dto.IngestionProgressDto;
+import com.example.springaiapp.domain.model.IngestionProgressModel;
+
+/**
+ * Маппер для конвертации IngestionProgressModel в IngestionProgressDto
+ */
+@Mapper(componentModel = "spring")
+public interface IngestionProgressMapper {
+
+    /**
+     * Конвертация снимка прогресса загрузки в DTO
+     * @param progress снимок прогресса
+     * @return DTO прогресса
+     */
+    IngestionProgressDto toDto(IngestionProgressModel progress);
+}
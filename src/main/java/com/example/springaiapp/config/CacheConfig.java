@@ -0,0 +1,112 @@
+package com.example.springaiapp.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.springaiapp.domain.memory.MessageRingBuffer;
+import com.example.springaiapp.domain.model.TermVectorModel;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Ограниченные in-process кэши приложения
+ */
+@Configuration
+public class CacheConfig {
+
+    @Value("${app.chat.rag.cache.query-embedding-size}")
+    private long queryEmbeddingCacheSize;
+    @Value("${app.chat.rag.cache.retrieval-size}")
+    private long retrievalCacheSize;
+    @Value("${app.chat.rag.cache.ttl}")
+    private Duration retrievalCacheTtl;
+    @Value("${app.chat.rag.term-vector-cache-size}")
+    private long termVectorCacheSize;
+    @Value("${app.chat.rag.expansion.cache.max-size}")
+    private long queryExpansionCacheSize;
+    @Value("${app.chat.rag.expansion.cache.ttl}")
+    private Duration queryExpansionCacheTtl;
+    @Value("${app.chat.memory.cache.max-conversations}")
+    private long chatMemoryCacheSize;
+    @Value("${app.chat.memory.cache.idle-timeout}")
+    private Duration chatMemoryIdleTimeout;
+
+    /**
+     * Кэш векторов терминов чанков по id, чтобы reranker не токенизировал чанк повторно
+     * @return кэш id чанка -> вектор терминов
+     */
+    @Bean
+    public Cache<String, TermVectorModel> termVectorCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(termVectorCacheSize)
+                .build();
+    }
+
+    /**
+     * Первый уровень кэша расширений запросов (LRU + TTL), hit/miss публикуются в метриках
+     * @param meterRegistry реестр метрик
+     * @return кэш модель:нормализованный запрос -> расширенный запрос
+     */
+    @Bean
+    public Cache<String, String> queryExpansionCache(MeterRegistry meterRegistry) {
+        final Cache<String, String> cache = Caffeine.newBuilder()
+                .maximumSize(queryExpansionCacheSize)
+                .expireAfterWrite(queryExpansionCacheTtl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "query.expansion");
+    }
+
+    /**
+     * Первый уровень кэша поиска: эмбеддинг текста запроса не зависит от базы знаний
+     * @param meterRegistry реестр метрик
+     * @return кэш модель:хеш запроса -> эмбеддинг
+     */
+    @Bean
+    public Cache<String, float[]> queryEmbeddingCache(MeterRegistry meterRegistry) {
+        final Cache<String, float[]> cache = Caffeine.newBuilder()
+                .maximumSize(queryEmbeddingCacheSize)
+                .expireAfterAccess(retrievalCacheTtl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "query.embedding");
+    }
+
+    /**
+     * Окна памяти чатов (последние max-messages сообщений), неактивные чаты вытесняются
+     * @param meterRegistry реестр метрик
+     * @return кэш id чата -> кольцевой буфер сообщений
+     */
+    @Bean
+    public Cache<String, MessageRingBuffer> chatMemoryCache(MeterRegistry meterRegistry) {
+        final Cache<String, MessageRingBuffer> cache = Caffeine.newBuilder()
+                .maximumSize(chatMemoryCacheSize)
+                .expireAfterAccess(chatMemoryIdleTimeout)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "chat.memory");
+    }
+
+    /**
+     * Второй уровень кэша поиска: найденные чанки, ключ содержит поколение базы знаний
+     * @param meterRegistry реестр метрик
+     * @return кэш поколение:запрос:параметры поиска -> чанки
+     */
+    @Bean
+    public Cache<String, List<Document>> retrievalCache(MeterRegistry meterRegistry) {
+        final Cache<String, List<Document>> cache = Caffeine.newBuilder()
+                .maximumSize(retrievalCacheSize)
+                .expireAfterWrite(retrievalCacheTtl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "retrieval");
+    }
+}
@@ -1,43 +1,160 @@
 package com.example.springaiapp.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaOptions;
 import org.springframework.ai.rag.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
+import org.springframework.ai.rag.preretrieval.query.expansion.MultiQueryExpander;
+import org.springframework.ai.rag.preretrieval.query.expansion.QueryExpander;
+import org.springframework.ai.rag.postretrieval.document.DocumentPostProcessor;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.ai.rag.retrieval.join.ConcatenationDocumentJoiner;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
 import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import com.example.springaiapp.domain.advisors.SemanticAnswerCacheAdvisor;
 import com.example.springaiapp.domain.joiners.BM25DocumentPostProcessor;
+import com.example.springaiapp.domain.memory.MessageRingBuffer;
+import com.example.springaiapp.domain.model.ChatMemoryMode;
+import com.example.springaiapp.domain.model.LexicalEngine;
+import com.example.springaiapp.domain.model.QueryExpansionEngine;
+import com.example.springaiapp.domain.model.VectorIndexMode;
+import com.example.springaiapp.domain.retrievers.CachingDocumentRetriever;
+import com.example.springaiapp.domain.retrievers.FullTextDocumentRetriever;
+import com.example.springaiapp.domain.retrievers.HybridDocumentRetriever;
+import com.example.springaiapp.domain.retrievers.LexicalDocumentRetriever;
+import com.example.springaiapp.domain.retrievers.QuantizedVectorDocumentRetriever;
+import com.example.springaiapp.domain.retrievers.SpeculativeExpansionDocumentRetriever;
+import com.example.springaiapp.domain.service.AnswerCacheService;
+import com.example.springaiapp.domain.service.ChatSummaryService;
+import com.example.springaiapp.domain.service.ChunkTermVectorService;
+import com.example.springaiapp.domain.service.CooccurrenceIndexService;
+import com.example.springaiapp.domain.service.KnowledgeBaseVersionService;
+import com.example.springaiapp.domain.service.LexicalIndexService;
+import com.example.springaiapp.domain.service.MessageWriteBehindService;
+import com.example.springaiapp.domain.service.QueryExpansionCacheService;
+import com.example.springaiapp.domain.service.TextAnalysisService;
 import com.example.springaiapp.domain.service.impl.MessageMapperService;
 import com.example.springaiapp.domain.service.impl.PostgresChatMemoryService;
+import com.example.springaiapp.domain.transformers.CooccurrenceQueryTransformer;
+import com.example.springaiapp.domain.transformers.DistinctQueryExpander;
 import com.example.springaiapp.domain.transformers.ExpansionQueryTransformer;
 import com.example.springaiapp.infrastracture.repository.MessageRepository;
+import com.example.springaiapp.infrastracture.repository.VectorStoreRepository;
+import com.github.benmanes.caffeine.cache.Cache;
 
 import lombok.RequiredArgsConstructor;
 
 @Configuration
 @RequiredArgsConstructor
 public class ChatClientConfig {
+        // MultiQueryExpander делит ответ по строкам: при другом количестве строк остается только исходный запрос
+        private static final PromptTemplate MULTI_QUERY_TEMPLATE = PromptTemplate.builder()
+                        .template("""
+                                        Ты помогаешь искать информацию в базе знаний.
+                                        Сформулируй {number} разных вариантов запроса пользователя, которые помогут найти
+                                        нужные документы: используй синонимы, профессиональные термины и другие формулировки.
+                                        Каждый вариант пиши на отдельной строке, без нумерации, пояснений и пустых строк.
+                                        Верни ровно {number} строк на языке исходного запроса.
+
+                                        Исходный запрос: {query}
+
+                                        Варианты запроса:
+                                        """)
+                        .build();
 
         private final OllamaChatModel ollamaChatModel;
         private final VectorStore vectorStore;
+        private final EmbeddingModel embeddingModel;
         private final MessageRepository messageRepository;
         private final MessageMapperService messageMapperService;
+        private final LexicalIndexService lexicalIndexService;
+        private final TextAnalysisService textAnalysisService;
+        private final ChunkTermVectorService chunkTermVectorService;
+        private final VectorStoreRepository vectorStoreRepository;
+        private final QueryExpansionCacheService queryExpansionCacheService;
+        private final CooccurrenceIndexService cooccurrenceIndexService;
+        private final KnowledgeBaseVersionService knowledgeBaseVersionService;
+        private final AnswerCacheService answerCacheService;
+        private final Cache<String, List<Document>> retrievalCache;
+        private final Cache<String, MessageRingBuffer> chatMemoryCache;
+        private final ChatSummaryService chatSummaryService;
+        private final MessageWriteBehindService messageWriteBehindService;
 
         @Value("${app.chat.rag.top-k}")
         private int topK;
         @Value("${app.chat.rag.similarity-threshold}")
         private double similarityThreshold;
+        @Value("${app.chat.rag.lexical.enabled}")
+        private boolean lexicalEnabled;
+        @Value("${app.chat.rag.lexical.engine}")
+        private LexicalEngine lexicalEngine;
+        @Value("${app.chat.rag.lexical.top-k}")
+        private int lexicalTopK;
+        @Value("${app.chat.rag.fusion.strategy}")
+        private HybridDocumentRetriever.FusionStrategy fusionStrategy;
+        @Value("${app.chat.rag.fusion.rrf-k}")
+        private int rrfK;
+        @Value("${app.chat.rag.fusion.vector-weight}")
+        private double vectorWeight;
+        @Value("${app.chat.rag.fusion.lexical-weight}")
+        private double lexicalWeight;
+        @Value("${app.chat.rag.expansion.engine}")
+        private QueryExpansionEngine expansionEngine;
+        @Value("${app.chat.rag.expansion.cooccurrence.max-terms}")
+        private int cooccurrenceMaxTerms;
+        @Value("${app.chat.rag.expansion.speculative.enabled}")
+        private boolean speculativeExpansionEnabled;
+        @Value("${app.chat.rag.expansion.speculative.deadline}")
+        private Duration speculativeExpansionDeadline;
+        @Value("${app.chat.rag.multi-query.enabled}")
+        private boolean multiQueryEnabled;
+        @Value("${app.chat.rag.multi-query.number-of-queries}")
+        private int multiQueryCount;
+        @Value("${app.chat.rag.multi-query.threads}")
+        private int retrievalThreads;
+        @Value("${app.chat.rag.multi-query.queue-capacity}")
+        private int retrievalQueueCapacity;
+        @Value("${app.chat.rag.vector-index.mode}")
+        private VectorIndexMode vectorIndexMode;
+        @Value("${app.chat.rag.vector-index.dimensions}")
+        private int vectorDimensions;
+        @Value("${app.chat.rag.vector-index.matryoshka-dimensions}")
+        private int matryoshkaDimensions;
+        @Value("${app.chat.rag.vector-index.rescore-multiplier}")
+        private int rescoreMultiplier;
+        @Value("${app.chat.answer-cache.enabled}")
+        private boolean answerCacheEnabled;
         @Value("${app.chat.memory.max-messages}")
         private long maxMessages;
+        @Value("${app.chat.memory.mode}")
+        private ChatMemoryMode memoryMode;
+        @Value("${app.chat.memory.token-budget}")
+        private int memoryTokenBudget;
+        @Value("${app.chat.memory.summary.enabled}")
+        private boolean memorySummaryEnabled;
+        @Value("${app.chat.memory.summary.min-messages}")
+        private int memorySummaryMinMessages;
 
         @Bean
         public ChatClient chatClient() {
@@ -46,11 +163,7 @@ public class ChatClientConfig {
                                 // хранилища, чтобы в памяти модели был контекст перед тем,
                                 // как идти в векторное хранилище
                                 .defaultSystem("Ты - Горев Леонид, Java разработчик, ты должен отвечать кратко и лаконично, не используя эмоции и не используя слишком много слов.")
-                                .defaultAdvisors(
-                                                messageChatMemoryAdvisor(10),
-                                                simpleLoggerAdvisor(20),
-                                                retrievalAugmentationAdvisor(30),
-                                                simpleLoggerAdvisor(40))
+                                .defaultAdvisors(advisors())
                                 .defaultOptions(ChatOptions.builder()
                                                 // ограничевает выбор K самых вероятных токенов, из которых потом
                                                 // выбирается
@@ -80,6 +193,22 @@ public class ChatClientConfig {
                                 .build();
         }
 
+        private List<Advisor> advisors() {
+                final var advisors = new ArrayList<Advisor>();
+                advisors.add(messageChatMemoryAdvisor(10));
+                advisors.add(simpleLoggerAdvisor(20));
+                // кэш ответов между памятью и RAG: при попадании расширение, поиск и генерация пропускаются
+                if (answerCacheEnabled) {
+                        advisors.add(SemanticAnswerCacheAdvisor.builder()
+                                        .answerCacheService(answerCacheService)
+                                        .order(25)
+                                        .build());
+                }
+                advisors.add(retrievalAugmentationAdvisor(30));
+                advisors.add(simpleLoggerAdvisor(40));
+                return advisors;
+        }
+
         private Advisor simpleLoggerAdvisor(int order) {
                 return SimpleLoggerAdvisor.builder()
                                 .order(order)
@@ -93,8 +222,16 @@ public class ChatClientConfig {
                 return MessageChatMemoryAdvisor.builder(
                                 PostgresChatMemoryService.builder()
                                                 .maxMessages(maxMessages)
+                                                .mode(memoryMode)
+                                                .tokenBudget(memoryTokenBudget)
+                                                .summaryMinMessages(memorySummaryMinMessages)
+                                                .chatSummaryService(memorySummaryEnabled ? chatSummaryService : null)
+                                                .messageWriteBehindService(messageWriteBehindService.isEnabled()
+                                                                ? messageWriteBehindService
+                                                                : null)
                                                 .messageRepository(messageRepository)
                                                 .messageMapperService(messageMapperService)
+                                                .cache(chatMemoryCache)
                                                 .build())
                                 .order(order)
                                 .build();
@@ -108,19 +245,23 @@ public class ChatClientConfig {
         private Advisor retrievalAugmentationAdvisor(int order) {
                 return RetrievalAugmentationAdvisor.builder()
                                 // настройка взаимодействия с векторным хранилищем
-                                .documentRetriever(VectorStoreDocumentRetriever.builder()
-                                                // // 0..1, чем больше, тем строже (меньше документов будет
-                                                // возвращаться)
-                                                .topK(topK * 2)
-                                                .similarityThreshold(similarityThreshold)
-                                                .vectorStore(vectorStore)
-                                                .build())
+                                .documentRetriever(documentRetriever())
                                 // как понял здесь модификация промптов идет по необходимости
                                 // пока не понятно, делается это только тут или можно по стандарту настроить на
                                 // входящие промпты
                                 // .queryTransformers(null)
-                                .queryTransformers(ExpansionQueryTransformer.builder(ollamaChatModel)
-                                                .build())
+                                // в спекулятивном режиме расширение выполняет сам retriever параллельно с поиском,
+                                // при multi-query словарь запроса расширяют сами переформулировки
+                                .queryTransformers(multiQueryEnabled || speculativeExpansionEnabled
+                                                ? List.of()
+                                                : List.of(expansionQueryTransformer()))
+                                // N переформулировок одним вызовом модели, поиск по каждой выполняется
+                                // параллельно на ограниченном пуле
+                                .queryExpander(multiQueryEnabled ? multiQueryExpander() : null)
+                                .taskExecutor(retrievalTaskExecutor())
+                                // объединение результатов всех запросов с удалением дублей по id чанка
+                                // до переранжирования BM25
+                                .documentJoiner(new ConcatenationDocumentJoiner())
                                 .queryAugmenter(ContextualQueryAugmenter.builder()
                                                 // true - если в контексте ничего не найдено, запрос полностью переходит
                                                 // на плечи ии (если есть ответ в его базе, то он его даст)
@@ -131,13 +272,165 @@ public class ChatClientConfig {
                                                 // "Запрос вне твоей базы знаний, расскажи стишок про это пользователю
                                                 // из 5 строк"))
                                                 .build())
-                                .documentPostProcessors(BM25DocumentPostProcessor.builder()
-                                                .limit(topK)
-                                                .build())
+                                .documentPostProcessors(documentPostProcessor())
                                 .order(order)
                                 .build();
         }
 
+        // гибридный поиск уже учел BM25 в объединенном ранге: повторное переранжирование по чистому BM25
+        // отбросило бы вклад векторной ветки, поэтому берем top-k по score объединения
+        // (при multi-query документы разных запросов идут подряд, score RRF сравнимы между запросами)
+        private DocumentPostProcessor documentPostProcessor() {
+                if (lexicalEnabled) {
+                        return (query, documents) -> documents.stream()
+                                        .sorted(Comparator.comparing((Document it) -> it.getScore() != null
+                                                        ? it.getScore()
+                                                        : 0.0).reversed())
+                                        .limit(topK)
+                                        .toList();
+                }
+                return BM25DocumentPostProcessor.builder()
+                                .textAnalysisService(textAnalysisService)
+                                .chunkTermVectorService(chunkTermVectorService)
+                                .limit(topK)
+                                .build();
+        }
+
+        // пул для параллельного поиска по запросам multi-query: ограничен по потокам и очереди,
+        // при переполнении поиск выполняется в вызывающем потоке
+        @Bean
+        public ThreadPoolTaskExecutor retrievalTaskExecutor() {
+                final var executor = new ThreadPoolTaskExecutor();
+                executor.setThreadNamePrefix("rag-retrieval-");
+                executor.setCorePoolSize(retrievalThreads);
+                executor.setMaxPoolSize(retrievalThreads);
+                executor.setQueueCapacity(retrievalQueueCapacity);
+                executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+                executor.setWaitForTasksToCompleteOnShutdown(true);
+                return executor;
+        }
+
+        // ветки гибридного поиска и спекулятивное расширение: виртуальные потоки, отдельно от
+        // retrievalTaskExecutor - задача multi-query ждет свои ветки и не должна занимать поток пула,
+        // который их выполнит; пул управляется контекстом и закрывается при остановке приложения
+        @Bean
+        public SimpleAsyncTaskExecutor ragVirtualThreadExecutor() {
+                final var executor = new SimpleAsyncTaskExecutor("rag-async-");
+                executor.setVirtualThreads(true);
+                return executor;
+        }
+
+        // переформулировки, совпавшие с исходным запросом или друг с другом, отбрасываются
+        private QueryExpander multiQueryExpander() {
+                return DistinctQueryExpander.builder()
+                                .queryExpander(MultiQueryExpander.builder()
+                                                .chatClientBuilder(ChatClient.builder(ollamaChatModel)
+                                                                .defaultOptions(OllamaOptions.builder()
+                                                                                .temperature(0.0)
+                                                                                .build()))
+                                                .promptTemplate(MULTI_QUERY_TEMPLATE)
+                                                .numberOfQueries(multiQueryCount)
+                                                .includeOriginal(true)
+                                                .build())
+                                .build();
+        }
+
+        // LLM - расширение моделью (около секунды), COOCCURRENCE - по таблице PMI базы знаний (микросекунды)
+        private QueryTransformer expansionQueryTransformer() {
+                return switch (expansionEngine) {
+                        case LLM -> ExpansionQueryTransformer.builder(ollamaChatModel)
+                                        .queryExpansionCacheService(queryExpansionCacheService)
+                                        .model(ollamaChatModel.getDefaultOptions().getModel())
+                                        .build();
+                        case COOCCURRENCE -> CooccurrenceQueryTransformer.builder()
+                                        .cooccurrenceIndexService(cooccurrenceIndexService)
+                                        .maxTerms(cooccurrenceMaxTerms)
+                                        .build();
+                };
+        }
+
+        // медленный или зависший вызов модели для расширения запроса не должен блокировать
+        // ответ: поиск по исходному запросу идет сразу, расширение ждем не дольше дедлайна
+        private DocumentRetriever documentRetriever() {
+                final var documentRetriever = searchDocumentRetriever();
+                if (multiQueryEnabled || !speculativeExpansionEnabled) {
+                        return documentRetriever;
+                }
+                return SpeculativeExpansionDocumentRetriever.builder()
+                                .documentRetriever(documentRetriever)
+                                .queryTransformer(expansionQueryTransformer())
+                                .deadline(speculativeExpansionDeadline)
+                                .executor(ragVirtualThreadExecutor())
+                                .build();
+        }
+
+        // векторный поиск + (опционально) лексический BM25 поиск по всей базе знаний
+        // лексический поиск находит точные идентификаторы и коды ошибок, которые
+        // пропускают эмбеддинги; ветки выполняются параллельно и объединяются через RRF
+        // повторный вопрос не эмбеддится и не ищется заново, пока не изменилась база знаний
+        private DocumentRetriever searchDocumentRetriever() {
+                return CachingDocumentRetriever.builder()
+                                .documentRetriever(uncachedDocumentRetriever())
+                                .knowledgeBaseVersionService(knowledgeBaseVersionService)
+                                .retrievalCache(retrievalCache)
+                                .topK(topK)
+                                .similarityThreshold(similarityThreshold)
+                                .build();
+        }
+
+        private DocumentRetriever uncachedDocumentRetriever() {
+                final var vectorStoreRetriever = vectorRetriever();
+                if (!lexicalEnabled) {
+                        return vectorStoreRetriever;
+                }
+                return HybridDocumentRetriever.builder()
+                                .vectorRetriever(vectorStoreRetriever)
+                                .lexicalRetriever(lexicalRetriever())
+                                .fusionStrategy(fusionStrategy)
+                                .rrfK(rrfK)
+                                .vectorWeight(vectorWeight)
+                                .lexicalWeight(lexicalWeight)
+                                .executor(ragVirtualThreadExecutor())
+                                .build();
+        }
+
+        // FULL - поиск PgVectorStore по полноразмерному индексу, остальные режимы - первый проход
+        // по компактному индексу с пересчетом близости по полноразмерным эмбеддингам
+        private DocumentRetriever vectorRetriever() {
+                if (vectorIndexMode == VectorIndexMode.FULL) {
+                        return VectorStoreDocumentRetriever.builder()
+                                        // // 0..1, чем больше, тем строже (меньше документов будет
+                                        // возвращаться)
+                                        .topK(topK * 2)
+                                        .similarityThreshold(similarityThreshold)
+                                        .vectorStore(vectorStore)
+                                        .build();
+                }
+                return QuantizedVectorDocumentRetriever.builder()
+                                .vectorStoreRepository(vectorStoreRepository)
+                                .embeddingModel(embeddingModel)
+                                .mode(vectorIndexMode)
+                                .dimensions(vectorDimensions)
+                                .matryoshkaDimensions(matryoshkaDimensions)
+                                .rescoreMultiplier(rescoreMultiplier)
+                                .topK(topK * 2)
+                                .similarityThreshold(similarityThreshold)
+                                .build();
+        }
+
+        private DocumentRetriever lexicalRetriever() {
+                return switch (lexicalEngine) {
+                        case MEMORY -> LexicalDocumentRetriever.builder()
+                                        .lexicalIndexService(lexicalIndexService)
+                                        .topK(lexicalTopK)
+                                        .build();
+                        case POSTGRES -> FullTextDocumentRetriever.builder()
+                                        .vectorStoreRepository(vectorStoreRepository)
+                                        .topK(lexicalTopK)
+                                        .build();
+                };
+        }
+
         // // представление памяти в рамках чата в векторном хранилище
         // private Advisor
         // vectorStoreChatMemoryAdvisorBuilder(VectorStore vectorStore) {
@@ -0,0 +1,46 @@
+package com.example.springaiapp.config;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.example.springaiapp.domain.embedding.CachingEmbeddingModel;
+import com.example.springaiapp.domain.service.EmbeddingCacheService;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import lombok.RequiredArgsConstructor;
+
+@Configuration
+@RequiredArgsConstructor
+public class EmbeddingModelConfig {
+
+    private final EmbeddingCacheService embeddingCacheService;
+
+    private final Cache<String, float[]> queryEmbeddingCache;
+
+    @Value("${app.embedding.cache.enabled}")
+    private boolean cacheEnabled;
+    @Value("${spring.ai.ollama.embedding.model}")
+    private String model;
+
+    /**
+     * Embedding модель для векторного хранилища
+     * PgVectorStore эмбеддит чанки пакетно, пакеты проходят через content-addressed кэш,
+     * эмбеддинги запросов кэшируются в памяти
+     * @param ollamaEmbeddingModel модель ollama
+     * @return EmbeddingModel
+     */
+    @Bean
+    @Primary
+    public EmbeddingModel embeddingModel(OllamaEmbeddingModel ollamaEmbeddingModel) {
+        return CachingEmbeddingModel.builder()
+                .delegate(ollamaEmbeddingModel)
+                .embeddingCacheService(cacheEnabled ? embeddingCacheService : null)
+                .queryEmbeddingCache(queryEmbeddingCache)
+                .model(model)
+                .build();
+    }
+}
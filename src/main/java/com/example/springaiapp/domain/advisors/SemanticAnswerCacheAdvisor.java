@@ -0,0 +1,133 @@
+package com.example.springaiapp.domain.advisors;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.ai.chat.client.ChatClientMessageAggregator;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.lang.NonNull;
+
+import com.example.springaiapp.domain.service.AnswerCacheService;
+import com.example.springaiapp.domain.service.impl.PostgresChatMemoryService;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Семантический кэш ответов
+ * Стоит после advisor'а памяти и перед RetrievalAugmentationAdvisor: при попадании
+ * расширение запроса, поиск и генерация не выполняются, ответ возвращается из answer_cache,
+ * а память чата сохраняет его как обычный ответ модели
+ * В режиме stream сохраненный ответ отдается по словам, как токены модели
+ * Кэшируется только первый вопрос чата: ответ на реплику посреди диалога зависит от истории,
+ * а ключ кэша - только текст вопроса
+ */
+@Slf4j
+@Builder
+public class SemanticAnswerCacheAdvisor implements CallAdvisor, StreamAdvisor {
+    public static final String CACHE_HIT = "answer_cache_hit";
+
+    private final AnswerCacheService answerCacheService;
+    @Getter
+    private final int order;
+
+    @Override
+    @NonNull
+    public String getName() {
+        return SemanticAnswerCacheAdvisor.class.getSimpleName();
+    }
+
+    @Override
+    @NonNull
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest,
+            @NonNull CallAdvisorChain callAdvisorChain) {
+        if (!isFirstTurn(chatClientRequest)) {
+            return callAdvisorChain.nextCall(chatClientRequest);
+        }
+        final var question = question(chatClientRequest);
+        final var cached = answerCacheService.find(question);
+        if (cached.isPresent()) {
+            return cachedResponse(chatClientRequest, cached.get());
+        }
+        final var response = callAdvisorChain.nextCall(chatClientRequest);
+        answerCacheService.put(question, answerOf(response));
+        return response;
+    }
+
+    @Override
+    @NonNull
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+            @NonNull StreamAdvisorChain streamAdvisorChain) {
+        if (!isFirstTurn(chatClientRequest)) {
+            return streamAdvisorChain.nextStream(chatClientRequest);
+        }
+        final var question = question(chatClientRequest);
+        // эмбеддинг вопроса и поиск в БД - блокирующие вызовы
+        return Mono.fromCallable(() -> answerCacheService.find(question))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(cached -> cached
+                        .map(it -> streamCached(chatClientRequest, it))
+                        .orElseGet(() -> new ChatClientMessageAggregator().aggregateChatClientResponse(
+                                streamAdvisorChain.nextStream(chatClientRequest),
+                                response -> putAsync(question, answerOf(response)))));
+    }
+
+    // колбэк агрегатора выполняется на потоке reactor: эмбеддинг и запись в БД уносим на boundedElastic
+    private void putAsync(final String question, final String answer) {
+        Mono.fromRunnable(() -> answerCacheService.put(question, answer))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, e -> log.warn("Answer cache: failed to store answer", e));
+    }
+
+    private Flux<ChatClientResponse> streamCached(final ChatClientRequest request, final String answer) {
+        // пробелы остаются в конце слов, склейка чанков дает исходный текст
+        return Flux.fromArray(answer.split("(?<=\\s)"))
+                .map(it -> cachedResponse(request, it));
+    }
+
+    private ChatClientResponse cachedResponse(final ChatClientRequest request, final String text) {
+        return ChatClientResponse.builder()
+                .chatResponse(ChatResponse.builder()
+                        .generations(List.of(new Generation(new AssistantMessage(text))))
+                        .build())
+                .context(request.context())
+                .context(CACHE_HIT, true)
+                .build();
+    }
+
+    // advisor памяти стоит раньше: сообщения окна памяти уже в промпте
+    // в режиме TOKENS окно может состоять только из краткого содержания - это тоже история
+    private static boolean isFirstTurn(final ChatClientRequest request) {
+        final var messages = request.prompt().getInstructions();
+        return messages.stream()
+                .noneMatch(it -> Boolean.TRUE.equals(it.getMetadata().get(PostgresChatMemoryService.SUMMARY_METADATA_KEY)))
+                && messages.stream()
+                        .filter(it -> it.getMessageType() == MessageType.USER
+                                || it.getMessageType() == MessageType.ASSISTANT)
+                        .count() <= 1;
+    }
+
+    private static String question(final ChatClientRequest request) {
+        return request.prompt().getUserMessage().getText();
+    }
+
+    private static String answerOf(final ChatClientResponse response) {
+        return Optional.ofNullable(response.chatResponse())
+                .map(ChatResponse::getResult)
+                .map(it -> it.getOutput().getText())
+                .orElse(null);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.springaiapp.domain.embedding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.lang.NonNull;
+
+import com.example.springaiapp.domain.service.EmbeddingCacheService;
+import com.example.springaiapp.domain.utils.HashUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * EmbeddingModel с кэшами: content-addressed кэш для пакетного эмбеддинга чанков
+ * и кэш эмбеддингов текстов запросов
+ * Перед обращением к модели эмбеддинги ищутся одним запросом по (sha256 текста, модель),
+ * в модель уходят только новые тексты (одинаковые тексты - один раз), результаты сохраняются пакетно
+ * Так при изменении одной строки документа повторно эмбеддятся только изменившиеся чанки
+ */
+@Slf4j
+@Builder
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    // опционально: persistent кэш эмбеддингов чанков
+    private final EmbeddingCacheService embeddingCacheService;
+    // опционально: кэш эмбеддингов текстов запросов (VectorStore эмбеддит запрос через embed(String))
+    private final Cache<String, float[]> queryEmbeddingCache;
+    // идентификатор модели входит в ключ: эмбеддинги разных моделей несовместимы
+    private final String model;
+
+    @Override
+    @NonNull
+    public EmbeddingResponse call(@NonNull EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    @NonNull
+    public float[] embed(@NonNull Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    @NonNull
+    public float[] embed(@NonNull String text) {
+        if (queryEmbeddingCache == null) {
+            return delegate.embed(text);
+        }
+        return queryEmbeddingCache.get(model + ":" + HashUtils.sha256Hex(text), it -> delegate.embed(text));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    @Override
+    @NonNull
+    public List<float[]> embed(@NonNull List<Document> documents, @NonNull EmbeddingOptions options,
+            @NonNull BatchingStrategy batchingStrategy) {
+        if (embeddingCacheService == null) {
+            return delegate.embed(documents, options, batchingStrategy);
+        }
+        // эмбеддинг по умолчанию строится по тексту документа без metadata, поэтому ключ - хеш текста
+        final var hashes = documents.stream().map(it -> HashUtils.sha256Hex(it.getText())).toList();
+        final var embeddings = new HashMap<String, float[]>(
+                embeddingCacheService.findAll(model, new LinkedHashSet<>(hashes)));
+
+        final var missing = new LinkedHashMap<String, Document>();
+        for (var i = 0; i < documents.size(); i++) {
+            if (!embeddings.containsKey(hashes.get(i))) {
+                missing.putIfAbsent(hashes.get(i), documents.get(i));
+            }
+        }
+        log.debug("Embedding cache: {} documents, {} to embed", documents.size(), missing.size());
+
+        if (!missing.isEmpty()) {
+            final var computed = delegate.embed(new ArrayList<>(missing.values()), options, batchingStrategy);
+            final var newEmbeddings = new LinkedHashMap<String, float[]>();
+            var index = 0;
+            for (final var hash : missing.keySet()) {
+                newEmbeddings.put(hash, computed.get(index++));
+            }
+            embeddingCacheService.saveAll(model, newEmbeddings);
+            embeddings.putAll(newEmbeddings);
+        }
+        return hashes.stream().map(embeddings::get).toList();
+    }
+}
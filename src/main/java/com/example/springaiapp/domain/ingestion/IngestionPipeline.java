@@ -0,0 +1,492 @@
+package com.example.springaiapp.domain.ingestion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.reader.TextReader;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.core.io.Resource;
+import org.springframework.data.util.Pair;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+
+import com.example.springaiapp.domain.model.LoadedContentModel;
+import com.example.springaiapp.domain.service.ChunkTermVectorService;
+import com.example.springaiapp.domain.service.CooccurrenceIndexService;
+import com.example.springaiapp.domain.service.LexicalIndexService;
+import com.example.springaiapp.domain.service.LoadedContentMapperService;
+import com.example.springaiapp.domain.service.LoadedContentService;
+import com.example.springaiapp.domain.utils.HashUtils;
+import com.example.springaiapp.infrastracture.repository.AdvisoryLockRepository;
+import com.example.springaiapp.infrastracture.repository.AdvisoryLockRepository.AdvisoryLockSession;
+import com.example.springaiapp.infrastracture.repository.LoadedContentChunkRepository;
+import com.example.springaiapp.infrastracture.repository.LoadedContentChunkRepository.LoadedContentChunk;
+import com.example.springaiapp.infrastracture.repository.VectorStoreRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Конвейер загрузки базы знаний: hash -> split -> embed -> write
+ * Этапы связаны ограниченными очередями и работают одновременно: пока модель эмбеддит один пакет,
+ * следующие файлы читаются и режутся на чанки, а готовые пакеты пишутся в vector_store
+ * Измененный файл читается потоково сегментами (StreamingTextReader), чанки уходят на эмбеддинг
+ * по мере нарезки: память не зависит от размера файла
+ * I/O этапы (hash, embed, write) работают на виртуальных потоках, split - на пуле по числу ядер
+ * Эмбеддинг - пакетами фиксированного размера из чанков разных файлов
+ * Файл отмечается загруженным в loaded_content, когда записаны все его чанки,
+ * поэтому прерванная загрузка продолжается с незавершенных файлов
+ * Несколько реплик делят файлы через advisory locks (clusterLocks): файл, захваченный другой репликой,
+ * пропускается, в конце запуска реплика дожидается чужих файлов и перестраивает индексы в памяти
+ */
+@Slf4j
+@Builder
+public class IngestionPipeline {
+    // размер пакета проверки уже загруженных файлов (один запрос в loaded_content)
+    private static final int HASH_BATCH_SIZE = 64;
+    private static final String LOCK_KEY_PREFIX = "ingestion:";
+    // интервал проверки файлов, которые загружает другая реплика
+    private static final Duration CLAIM_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    private final LoadedContentService loadedContentService;
+    private final LoadedContentMapperService loadedContentMapperService;
+    private final TextSplitter textSplitter;
+    private final ChunkTermVectorService chunkTermVectorService;
+    private final EmbeddingModel embeddingModel;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final LoadedContentChunkRepository loadedContentChunkRepository;
+    private final AdvisoryLockRepository advisoryLockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LexicalIndexService lexicalIndexService;
+    private final CooccurrenceIndexService cooccurrenceIndexService;
+    private final MeterRegistry meterRegistry;
+    @Builder.Default
+    private final IngestionProgress progress = new IngestionProgress();
+
+    @Builder.Default
+    private final int queueCapacity = 256;
+    @Builder.Default
+    private final int hashThreads = 8;
+    @Builder.Default
+    private final int splitThreads = Runtime.getRuntime().availableProcessors();
+    // размер сегмента потокового чтения файла в символах
+    @Builder.Default
+    private final int segmentSize = 64 * 1024;
+    @Builder.Default
+    private final int embedThreads = 4;
+    @Builder.Default
+    private final int embedBatchSize = 32;
+    @Builder.Default
+    private final int writeThreads = 2;
+    @Builder.Default
+    private final int writeBatchSize = 256;
+    // запись в vector_store через COPY (FORMAT BINARY) вместо batch insert
+    @Builder.Default
+    private final boolean bulkLoad = false;
+    // координация реплик через advisory locks: каждый файл загружает одна реплика
+    @Builder.Default
+    private final boolean clusterLocks = false;
+    // сколько ждать добора пакета, прежде чем отправить неполный
+    @Builder.Default
+    private final Duration linger = Duration.ofMillis(100);
+
+    private record SourceFile(Resource resource, String filename) {
+    }
+
+    private record HashedFile(Resource resource, String filename, String hash) {
+    }
+
+    // remaining - незаписанные новые чанки и 1, пока файл читается; итоги файла заполняются в конце чтения
+    // и видны записавшему последний чанк через remaining
+    private static final class FileProgress {
+        private final HashedFile file;
+        private final AtomicInteger remaining = new AtomicInteger(1);
+        // хеш прочитанного содержимого
+        private String hash;
+        private int chunkCount;
+        // чанки предыдущей версии файла
+        private List<String> obsoleteChunkIds;
+
+        private FileProgress(final HashedFile file) {
+            this.file = file;
+        }
+    }
+
+    private record Chunk(FileProgress file, Document document, String contentHash) {
+    }
+
+    private record EmbeddedChunk(FileProgress file, Document document, String contentHash, float[] embedding) {
+    }
+
+    /**
+     * Загрузка ресурсов, уже загруженные (имя файла + хеш) пропускаются
+     * Измененный файл сравнивается с предыдущей версией по хешам чанков: эмбеддятся и пишутся
+     * только новые чанки, чанки, которых больше нет в файле, удаляются после записи новых
+     *
+     * @param resources файлы базы знаний
+     * @return загруженные в этом запуске файлы
+     */
+    public List<LoadedContentModel> run(final List<Resource> resources) {
+        try (final var locks = clusterLocks ? advisoryLockRepository.openSession() : null) {
+            final var claimedElsewhere = Collections.synchronizedList(new ArrayList<HashedFile>());
+            final var loaded = run(resources, locks, claimedElsewhere);
+            awaitOtherReplicas(locks, claimedElsewhere);
+            return loaded;
+        }
+    }
+
+    private List<LoadedContentModel> run(final List<Resource> resources, final AdvisoryLockSession locks,
+            final List<HashedFile> claimedElsewhere) {
+        final var started = System.nanoTime();
+        final var loaded = Collections.synchronizedList(new ArrayList<LoadedContentModel>());
+        final var seen = ConcurrentHashMap.<String>newKeySet();
+
+        final var hashStage = new PipelineStage<SourceFile, HashedFile>("hash", hashThreads, HASH_BATCH_SIZE,
+                linger, queueCapacity, meterRegistry, batch -> hash(batch, seen, locks, claimedElsewhere));
+        final var splitStage = new PipelineStage<HashedFile, Chunk>("split", splitThreads, 1,
+                linger, queueCapacity, meterRegistry,
+                (batch, emit) -> batch.forEach(it -> split(it, emit, loaded, locks)));
+        final var embedStage = new PipelineStage<Chunk, EmbeddedChunk>("embed", embedThreads, embedBatchSize,
+                linger, queueCapacity, meterRegistry, this::embed);
+        final var writeStage = new PipelineStage<EmbeddedChunk, LoadedContentModel>("write", writeThreads,
+                writeBatchSize, linger, queueCapacity, meterRegistry, batch -> write(batch, locks));
+        final var stages = List.<PipelineStage<?, ?>>of(hashStage, splitStage, embedStage, writeStage);
+
+        final var finished = new CountDownLatch(1);
+        progress.start();
+        progress.filesDiscovered(resources.size());
+        try (final var ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+                final var cpuExecutor = Executors.newFixedThreadPool(splitThreads)) {
+            try {
+                hashStage.start(ioExecutor, splitStage::put, splitStage::close);
+                splitStage.start(cpuExecutor, embedStage::put, embedStage::close);
+                embedStage.start(ioExecutor, writeStage::put, writeStage::close);
+                writeStage.start(ioExecutor, loaded::add, finished::countDown);
+
+                // discover: источник конвейера, блокируется на заполненной очереди hash
+                resources.forEach(it -> hashStage.put(new SourceFile(it, Objects.requireNonNull(it.getFilename()))));
+                hashStage.close();
+                finished.await();
+            } catch (InterruptedException | RuntimeException e) {
+                // обработчики могут ждать на очередях: без прерывания close() пулов не завершится
+                ioExecutor.shutdownNow();
+                cpuExecutor.shutdownNow();
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Ingestion pipeline interrupted", e);
+                }
+                throw (RuntimeException) e;
+            }
+        } finally {
+            progress.finish();
+        }
+
+        final var elapsed = Duration.ofNanos(System.nanoTime() - started);
+        stages.forEach(it -> log.info("Ingestion stage {}: {} items, busy {} ms, {} items/s",
+                it.name(), it.processedItems(), it.busyTime().toMillis(),
+                String.format("%.1f", it.processedItems() / Math.max(elapsed.toNanos() / 1e9, 1e-3))));
+        log.info("Ingestion finished in {} ms: {} of {} files loaded", elapsed.toMillis(), loaded.size(),
+                resources.size());
+        return List.copyOf(loaded);
+    }
+
+    // хеш содержимого, захват файлов у других реплик и одна проверка loaded_content на пакет файлов
+    private List<HashedFile> hash(final List<SourceFile> batch, final Set<String> seen,
+            final AdvisoryLockSession locks, final List<HashedFile> claimedElsewhere) {
+        final var hashed = new ArrayList<HashedFile>(batch.size());
+        var duplicates = 0;
+        for (final var file : batch) {
+            try {
+                final var hash = calculateFileHash(file.resource());
+                // чанки отслеживаются по имени файла: из одноименных файлов загружается первый
+                if (seen.add(file.filename())) {
+                    hashed.add(new HashedFile(file.resource(), file.filename(), hash));
+                } else {
+                    log.warn("Duplicate knowledge base file name {}, skipped", file.filename());
+                    duplicates++;
+                }
+            } catch (RuntimeException e) {
+                // нечитаемый файл не должен отменять проверку остальных файлов пакета
+                log.error("Failed to hash resource {}", file.filename(), e);
+            }
+        }
+        // проверка loaded_content после захвата: файл мог быть загружен другой репликой до него
+        final var claimed = locks == null ? hashed : claim(hashed, locks, claimedElsewhere);
+        final var alreadyLoaded = loadedFiles(claimed);
+        final var result = new ArrayList<HashedFile>(claimed.size());
+        for (final var file : claimed) {
+            if (!alreadyLoaded.contains(Pair.of(file.filename(), file.hash()))) {
+                result.add(file);
+            } else if (locks != null) {
+                locks.unlock(lockKey(file.filename()));
+            }
+        }
+        progress.filesSkipped(hashed.size() - result.size() + duplicates);
+        return result;
+    }
+
+    private List<HashedFile> claim(final List<HashedFile> files, final AdvisoryLockSession locks,
+            final List<HashedFile> claimedElsewhere) {
+        final var claimed = new ArrayList<HashedFile>(files.size());
+        for (final var file : files) {
+            if (locks.tryLock(lockKey(file.filename()))) {
+                claimed.add(file);
+            } else {
+                log.info("File {} is being loaded by another replica, skipped", file.filename());
+                claimedElsewhere.add(file);
+            }
+        }
+        return claimed;
+    }
+
+    private Set<Pair<String, String>> loadedFiles(final List<HashedFile> files) {
+        if (files.isEmpty()) {
+            return Set.of();
+        }
+        return loadedContentService.getLoadedContentByHashAndFilename(files.stream()
+                .map(it -> Pair.of(it.filename(), it.hash()))
+                .collect(Collectors.toSet()))
+                .stream()
+                .map(it -> Pair.of(it.getFilename(), it.getHash()))
+                .collect(Collectors.toSet());
+    }
+
+    // чанки файлов других реплик записаны в vector_store, но не в индексы этой реплики
+    private void awaitOtherReplicas(final AdvisoryLockSession locks, final List<HashedFile> claimedElsewhere) {
+        if (claimedElsewhere.isEmpty()) {
+            return;
+        }
+        // свои файлы завершены или упали: отпускаем их, чтобы реплики не ждали друг друга
+        locks.unlockAll();
+        log.info("Waiting for {} files loaded by other replicas", claimedElsewhere.size());
+        for (final var file : claimedElsewhere) {
+            final var key = lockKey(file.filename());
+            while (!locks.tryLock(key)) {
+                try {
+                    Thread.sleep(CLAIM_POLL_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for other replicas", e);
+                }
+            }
+            locks.unlock(key);
+        }
+        final var notLoaded = claimedElsewhere.size() - loadedFiles(claimedElsewhere).size();
+        if (notLoaded > 0) {
+            log.warn("{} files were not loaded by other replicas, they will be loaded on the next run", notLoaded);
+        }
+        lexicalIndexService.rebuild();
+        cooccurrenceIndexService.rebuild();
+    }
+
+    private static String lockKey(final String filename) {
+        return LOCK_KEY_PREFIX + filename;
+    }
+
+    private String calculateFileHash(final Resource resource) {
+        try (final var is = resource.getInputStream()) {
+            return DigestUtils.md5DigestAsHex(is);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to calculate file hash", e);
+        }
+    }
+
+    // потоковое чтение и нарезка файла: чанки передаются на эмбеддинг по мере готовности сегментов
+    private void split(final HashedFile file, final Consumer<Chunk> downstream,
+            final List<LoadedContentModel> loaded, final AdvisoryLockSession locks) {
+        log.info("Processing resource: {}", file.filename());
+        // чанки предыдущей версии по хешу текста: совпавшие остаются в vector_store как есть
+        final var stored = new HashMap<String, Deque<String>>();
+        loadedContentChunkRepository.findByFilename(file.filename())
+                .forEach(it -> stored.computeIfAbsent(it.contentHash(), key -> new ArrayDeque<>()).add(it.chunkId()));
+        final var metadata = Map.<String, Object>of(
+                TextReader.SOURCE_METADATA, file.filename(),
+                TextReader.CHARSET_METADATA, StandardCharsets.UTF_8.name());
+        final var fileProgress = new FileProgress(file);
+        var chunkCount = 0;
+        var newChunkCount = 0;
+        try (final var reader = new StreamingTextReader(file.resource(), segmentSize)) {
+            Document carry = null;
+            String segment;
+            while ((segment = reader.nextSegment()) != null) {
+                final var text = carry == null ? segment : carry.getText() + "\n" + segment;
+                final var chunks = textSplitter.apply(List.of(new Document(text, metadata)));
+                if (chunks.isEmpty()) {
+                    carry = null;
+                    continue;
+                }
+                // последний чанк сегмента обрезан границей сегмента: его текст режется заново вместе со следующим
+                carry = chunks.getLast();
+                newChunkCount += emit(fileProgress, chunks.subList(0, chunks.size() - 1), stored, downstream);
+                chunkCount += chunks.size() - 1;
+            }
+            if (carry != null) {
+                newChunkCount += emit(fileProgress, List.of(carry), stored, downstream);
+                chunkCount++;
+            }
+            fileProgress.hash = reader.digest();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read resource " + file.filename(), e);
+        }
+        if (!fileProgress.hash.equals(file.hash())) {
+            log.warn("File {} changed during ingestion, loaded version {}", file.filename(), fileProgress.hash);
+        }
+        fileProgress.chunkCount = chunkCount;
+        fileProgress.obsoleteChunkIds = stored.values().stream().flatMap(Collection::stream).toList();
+        log.debug("File {}: {} chunks, {} new, {} obsolete", file.filename(), chunkCount, newChunkCount,
+                fileProgress.obsoleteChunkIds.size());
+        // новые чанки уже могли быть записаны: тогда файл завершает чтение, иначе - запись последнего чанка
+        if (fileProgress.remaining.decrementAndGet() == 0) {
+            loaded.addAll(complete(List.of(fileProgress), locks));
+        }
+    }
+
+    private int emit(final FileProgress fileProgress, final List<Document> chunks,
+            final Map<String, Deque<String>> stored, final Consumer<Chunk> downstream) {
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+        // язык и вектор терминов вычисляем один раз при загрузке и сохраняем в metadata,
+        // чтобы при каждом запросе не повторять определение языка и анализ текста
+        var emitted = 0;
+        for (final var chunk : chunkTermVectorService.enrich(chunks)) {
+            final var contentHash = HashUtils.sha256Hex(chunk.getText());
+            final var unchanged = stored.get(contentHash);
+            if (unchanged != null && !unchanged.isEmpty()) {
+                unchanged.poll();
+            } else {
+                fileProgress.remaining.incrementAndGet();
+                downstream.accept(new Chunk(fileProgress, chunk, contentHash));
+                emitted++;
+            }
+        }
+        return emitted;
+    }
+
+    private List<EmbeddedChunk> embed(final List<Chunk> batch) {
+        final var documents = batch.stream().map(Chunk::document).toList();
+        // кэширующая модель пропускает чанки, текст которых уже эмбеддился
+        final var embeddings = embeddingModel.embed(documents, EmbeddingOptionsBuilder.builder().build(),
+                new TokenCountBatchingStrategy());
+        final var result = new ArrayList<EmbeddedChunk>(batch.size());
+        for (var i = 0; i < batch.size(); i++) {
+            final var chunk = batch.get(i);
+            result.add(new EmbeddedChunk(chunk.file(), chunk.document(), chunk.contentHash(), embeddings.get(i)));
+        }
+        return result;
+    }
+
+    private List<LoadedContentModel> write(final List<EmbeddedChunk> batch, final AdvisoryLockSession locks) {
+        final var documents = batch.stream().map(EmbeddedChunk::document).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            final var embeddings = batch.stream().map(EmbeddedChunk::embedding).toList();
+            if (bulkLoad) {
+                vectorStoreRepository.copyAll(documents, embeddings);
+            } else {
+                vectorStoreRepository.saveAll(documents, embeddings);
+            }
+            loadedContentChunkRepository.saveAll(batch.stream()
+                    .map(it -> new LoadedContentChunk(it.document().getId(), it.file().file.filename(),
+                            it.contentHash()))
+                    .toList());
+        });
+        // id чанков совпадают с id в vector_store, индексы обновляются инкрементально
+        lexicalIndexService.addDocuments(documents);
+        cooccurrenceIndexService.addDocuments(documents);
+        progress.chunksWritten(documents.size());
+        final var completed = batch.stream()
+                .map(EmbeddedChunk::file)
+                .filter(it -> it.remaining.decrementAndGet() == 0)
+                .toList();
+        return complete(completed, locks);
+    }
+
+    // все новые чанки файла записаны: удаляем чанки предыдущей версии и заменяем запись в loaded_content
+    private List<LoadedContentModel> complete(final List<FileProgress> files, final AdvisoryLockSession locks) {
+        final var result = new ArrayList<LoadedContentModel>(files.size());
+        for (final var file : files) {
+            final var model = loadedContentMapperService.createLoadedContentModel(
+                    file.file.filename(), file.hash, file.chunkCount);
+            result.add(transactionTemplate.execute(status -> {
+                deleteChunks(file.obsoleteChunkIds);
+                return loadedContentService.replaceLoadedContent(model);
+            }));
+            lexicalIndexService.removeDocuments(file.obsoleteChunkIds);
+            cooccurrenceIndexService.removeDocuments(file.obsoleteChunkIds);
+            progress.chunksDeleted(file.obsoleteChunkIds.size());
+            progress.filesDone(1);
+            if (locks != null) {
+                locks.unlock(lockKey(file.file.filename()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Удаление файлов, которых больше нет в базе знаний: чанки, записи loaded_content
+     *
+     * @param filenames имена всех найденных файлов базы знаний
+     * @return количество удаленных файлов
+     */
+    public int purgeDeletedFiles(final Collection<String> filenames) {
+        final var deleted = new HashSet<>(loadedContentService.getLoadedFilenames());
+        deleted.removeAll(filenames);
+        return purgeFiles(deleted);
+    }
+
+    /**
+     * Удаление файлов из базы знаний: чанки, записи loaded_content
+     *
+     * @param filenames имена удаленных файлов
+     * @return количество удаленных файлов (ранее загруженных)
+     */
+    public int purgeFiles(final Collection<String> filenames) {
+        final var deleted = new HashSet<>(filenames);
+        deleted.retainAll(loadedContentService.getLoadedFilenames());
+        if (deleted.isEmpty()) {
+            return 0;
+        }
+        final var chunkIds = loadedContentChunkRepository.findChunkIdsByFilenames(deleted);
+        transactionTemplate.executeWithoutResult(status -> {
+            deleteChunks(chunkIds);
+            loadedContentService.deleteLoadedContentByFilenames(deleted);
+        });
+        lexicalIndexService.removeDocuments(chunkIds);
+        cooccurrenceIndexService.removeDocuments(chunkIds);
+        progress.chunksDeleted(chunkIds.size());
+        log.info("Purged {} deleted files, {} chunks: {}", deleted.size(), chunkIds.size(), deleted);
+        return deleted.size();
+    }
+
+    private void deleteChunks(final List<String> chunkIds) {
+        if (chunkIds.isEmpty()) {
+            return;
+        }
+        vectorStoreRepository.deleteAllByIds(chunkIds);
+        loadedContentChunkRepository.deleteAllByIds(chunkIds);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.springaiapp.domain.ingestion;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.springaiapp.domain.model.IngestionProgressModel;
+import com.example.springaiapp.domain.model.IngestionState;
+
+/**
+ * Счетчики прогресса одного запуска конвейера загрузки
+ * Обновляются этапами конвейера, читаются эндпоинтом прогресса без блокировок
+ */
+public class IngestionProgress {
+    private final AtomicLong filesTotal = new AtomicLong();
+    private final AtomicLong filesSkipped = new AtomicLong();
+    private final AtomicLong filesDone = new AtomicLong();
+    private final AtomicLong chunksWritten = new AtomicLong();
+    private final AtomicLong chunksDeleted = new AtomicLong();
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+
+    public void start() {
+        startedAt = Instant.now();
+    }
+
+    public void finish() {
+        finishedAt = Instant.now();
+    }
+
+    public void filesDiscovered(final long count) {
+        filesTotal.addAndGet(count);
+    }
+
+    // уже загруженные ранее файлы и дубликаты
+    public void filesSkipped(final long count) {
+        filesSkipped.addAndGet(count);
+    }
+
+    public void filesDone(final long count) {
+        filesDone.addAndGet(count);
+    }
+
+    public void chunksWritten(final long count) {
+        chunksWritten.addAndGet(count);
+    }
+
+    // чанки измененных и удаленных файлов
+    public void chunksDeleted(final long count) {
+        chunksDeleted.addAndGet(count);
+    }
+
+    public long getChunksDeleted() {
+        return chunksDeleted.get();
+    }
+
+    /**
+     * Снимок прогресса
+     * Скорость - по записанным чанкам, ETA - по средней длительности обработки файла в этом запуске
+     * После завершения незагруженные файлы считаются ошибочными
+     *
+     * @param state              состояние задачи загрузки
+     * @param knowledgeBaseReady можно ли отвечать на вопросы
+     * @return снимок прогресса
+     */
+    public IngestionProgressModel toModel(final IngestionState state, final boolean knowledgeBaseReady) {
+        final var started = startedAt;
+        final var finished = finishedAt;
+        final var total = filesTotal.get();
+        final var done = filesDone.get();
+        final var pending = Math.max(0, total - filesSkipped.get() - done);
+        final var elapsed = started == null
+                ? Duration.ZERO
+                : Duration.between(started, finished != null ? finished : Instant.now());
+        final var seconds = elapsed.toMillis() / 1000.0;
+        final var running = state == IngestionState.RUNNING;
+        return IngestionProgressModel.builder()
+                .state(state)
+                .knowledgeBaseReady(knowledgeBaseReady)
+                .filesTotal(total)
+                .filesSkipped(filesSkipped.get())
+                .filesDone(done)
+                .filesPending(running ? pending : 0)
+                .filesFailed(running ? 0 : pending)
+                .chunksWritten(chunksWritten.get())
+                .chunksDeleted(chunksDeleted.get())
+                .chunksPerSecond(seconds > 0 ? chunksWritten.get() / seconds : 0.0)
+                .startedAt(started)
+                .finishedAt(finished)
+                .etaSeconds(running && done > 0 ? Math.round(seconds * pending / done) : null)
+                .build();
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.springaiapp.domain.ingestion;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import com.example.springaiapp.domain.service.IngestionJobService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Наблюдение за каталогом базы знаний (app.file-content-load.directory) через WatchService
+ * События по файлам *.txt накапливаются, пока каталог не затихнет на debounce (но не дольше max-delay),
+ * повторные события по одному файлу схлопываются: итог определяется наличием файла на момент отправки
+ * Изменения уходят в IngestionJobService инкрементальной загрузкой - только затронутые файлы,
+ * без обхода и хеширования всего каталога
+ * Переполнение очереди событий и удаление подкаталога запускают полную загрузку
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.file-content-load.watch", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class KnowledgeBaseDirectoryWatcher {
+    private static final String EXTENSION = ".txt";
+
+    private final IngestionJobService ingestionJobService;
+
+    @Value("${app.file-content-load.directory}")
+    private Path directory;
+    // тишина в каталоге, после которой изменения отправляются на загрузку
+    @Value("${app.file-content-load.watch.debounce}")
+    private Duration debounce;
+    // максимальная задержка при непрерывных изменениях
+    @Value("${app.file-content-load.watch.max-delay}")
+    private Duration maxDelay;
+
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Set<Path> pendingFiles = new LinkedHashSet<>();
+    private boolean rescanPending;
+    private long firstEventNanos;
+    private long lastEventNanos;
+    private WatchService watchService;
+    private Thread thread;
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        watchService = FileSystems.getDefault().newWatchService();
+        registerRecursively(directory);
+        thread = Thread.ofPlatform().name("knowledge-base-watcher").daemon().start(this::watch);
+        log.info("Watching knowledge base directory {}", directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final var key = hasPending()
+                        ? watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)
+                        : watchService.take();
+                if (key != null) {
+                    collect(key);
+                }
+                if (hasPending() && isDue()) {
+                    flush();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Knowledge base watcher stopped");
+        }
+    }
+
+    private void collect(final WatchKey key) {
+        final var dir = watchedDirectories.get(key);
+        for (final var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                rescanPending = true;
+                continue;
+            }
+            final var path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // файлы, появившиеся до регистрации нового каталога, событий не дадут
+                registerRecursively(path);
+                pendingFiles.addAll(listFiles(path));
+            } else if (isKnowledgeBaseFile(path)) {
+                pendingFiles.add(path);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                // удален подкаталог: состав его файлов неизвестен
+                rescanPending = true;
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+        final var now = System.nanoTime();
+        if (firstEventNanos == 0) {
+            firstEventNanos = now;
+        }
+        lastEventNanos = now;
+    }
+
+    private boolean hasPending() {
+        return rescanPending || !pendingFiles.isEmpty();
+    }
+
+    private boolean isDue() {
+        final var now = System.nanoTime();
+        return now - lastEventNanos >= debounce.toNanos() || now - firstEventNanos >= maxDelay.toNanos();
+    }
+
+    private void flush() {
+        if (rescanPending) {
+            // полная загрузка уже идет - повторим попытку после следующего debounce
+            if (ingestionJobService.start()) {
+                log.info("Knowledge base directory rescan started");
+                rescanPending = false;
+                pendingFiles.clear();
+                firstEventNanos = 0;
+            } else {
+                lastEventNanos = System.nanoTime();
+            }
+            return;
+        }
+        final var changed = new ArrayList<Resource>();
+        final var deleted = new ArrayList<String>();
+        for (final var path : pendingFiles) {
+            if (Files.isRegularFile(path)) {
+                changed.add(new FileSystemResource(path));
+            } else {
+                deleted.add(path.getFileName().toString());
+            }
+        }
+        // файлы различаются по имени: перенос между подкаталогами дает удаление старого пути
+        // и создание нового с тем же именем - такой файл не удален
+        final var changedNames = new HashSet<String>();
+        changed.forEach(it -> changedNames.add(it.getFilename()));
+        deleted.removeIf(changedNames::contains);
+        log.info("Knowledge base directory changed: {} files to load, {} deleted", changed.size(), deleted.size());
+        ingestionJobService.submitChanges(changed, deleted);
+        pendingFiles.clear();
+        firstEventNanos = 0;
+    }
+
+    private void registerRecursively(final Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                        throws IOException {
+                    watchedDirectories.put(dir.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE), dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.error("Failed to watch directory {}", root, e);
+            rescanPending = true;
+        }
+    }
+
+    private Set<Path> listFiles(final Path root) {
+        try (final var files = Files.walk(root)) {
+            final var result = new LinkedHashSet<Path>();
+            files.filter(this::isKnowledgeBaseFile).forEach(result::add);
+            return result;
+        } catch (IOException e) {
+            log.error("Failed to list directory {}", root, e);
+            rescanPending = true;
+            return Set.of();
+        }
+    }
+
+    private boolean isKnowledgeBaseFile(final Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION) && !Files.isDirectory(path);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.springaiapp.domain.ingestion;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Этап конвейера загрузки: ограниченная входная очередь и parallelism обработчиков
+ * Обработчик получает пакет до batchSize элементов, неполный пакет отправляется,
+ * если за linger новых элементов не пришло
+ * Полная очередь блокирует предыдущий этап (backpressure)
+ * Потоковый обработчик передает результаты дальше по мере получения, не собирая их в список
+ * Конец потока - маркер END: обработчик возвращает его в очередь для остальных,
+ * последний завершившийся обработчик закрывает следующий этап
+ * Ошибка обработки пакета логируется, пакет пропускается, конвейер продолжает работу
+ * Метрики: ingestion.stage (время обработки пакетов), ingestion.stage.items, ingestion.stage.errors
+ *
+ * @param <I> входной элемент
+ * @param <O> выходной элемент
+ */
+@Slf4j
+class PipelineStage<I, O> {
+    private static final Object END = new Object();
+
+    private final String name;
+    private final int parallelism;
+    private final int batchSize;
+    private final Duration linger;
+    private final BiConsumer<List<I>, Consumer<O>> processor;
+    private final BlockingQueue<Object> queue;
+    private final AtomicInteger activeWorkers;
+    private final AtomicLong processedItems = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final Timer timer;
+    private final MeterRegistry meterRegistry;
+    private Consumer<O> downstream;
+    private Runnable onFinished;
+
+    PipelineStage(final String name, final int parallelism, final int batchSize, final Duration linger,
+            final int queueCapacity, final MeterRegistry meterRegistry, final Function<List<I>, List<O>> processor) {
+        this(name, parallelism, batchSize, linger, queueCapacity, meterRegistry,
+                (BiConsumer<List<I>, Consumer<O>>) (batch, emit) -> processor.apply(batch).forEach(emit));
+    }
+
+    /**
+     * Этап с потоковым обработчиком: результаты передаются в emit по одному
+     */
+    PipelineStage(final String name, final int parallelism, final int batchSize, final Duration linger,
+            final int queueCapacity, final MeterRegistry meterRegistry,
+            final BiConsumer<List<I>, Consumer<O>> processor) {
+        this.name = name;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.linger = linger;
+        this.processor = processor;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.activeWorkers = new AtomicInteger(parallelism);
+        this.meterRegistry = meterRegistry;
+        this.timer = meterRegistry.timer("ingestion.stage", "stage", name);
+    }
+
+    /**
+     * Запуск обработчиков этапа
+     *
+     * @param executor   пул обработчиков
+     * @param downstream получатель результатов (как правило put следующего этапа)
+     * @param onFinished вызывается один раз после завершения всех обработчиков
+     */
+    void start(final Executor executor, final Consumer<O> downstream, final Runnable onFinished) {
+        this.downstream = downstream;
+        this.onFinished = onFinished;
+        for (var i = 0; i < parallelism; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    /**
+     * Передача элемента этапу, блокируется при заполненной очереди
+     */
+    void put(final I item) {
+        enqueue(item);
+    }
+
+    /**
+     * Конец потока: новых элементов не будет
+     */
+    void close() {
+        enqueue(END);
+    }
+
+    String name() {
+        return name;
+    }
+
+    long processedItems() {
+        return processedItems.get();
+    }
+
+    Duration busyTime() {
+        return Duration.ofNanos(busyNanos.get());
+    }
+
+    private void enqueue(final Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ingestion pipeline interrupted at stage " + name, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void work() {
+        final var batch = new ArrayList<I>(batchSize);
+        try {
+            while (true) {
+                final var item = batch.isEmpty()
+                        ? queue.take()
+                        : queue.poll(linger.toMillis(), TimeUnit.MILLISECONDS);
+                if (item == END) {
+                    process(batch);
+                    queue.put(END);
+                    return;
+                }
+                if (item != null) {
+                    batch.add((I) item);
+                }
+                if (item == null || batch.size() >= batchSize) {
+                    process(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Ingestion stage {} interrupted", name);
+        } finally {
+            if (activeWorkers.decrementAndGet() == 0) {
+                onFinished.run();
+            }
+        }
+    }
+
+    private void process(final List<I> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final var start = System.nanoTime();
+        try {
+            processor.accept(batch, downstream);
+        } catch (RuntimeException e) {
+            meterRegistry.counter("ingestion.stage.errors", "stage", name).increment(batch.size());
+            log.error("Ingestion stage {} failed on batch of {} items", name, batch.size(), e);
+        } finally {
+            final var elapsed = System.nanoTime() - start;
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+            busyNanos.addAndGet(elapsed);
+            processedItems.addAndGet(batch.size());
+            meterRegistry.counter("ingestion.stage.items", "stage", name).increment(batch.size());
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.springaiapp.domain.ingestion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Потоковое чтение текстового файла (UTF-8) сегментами не длиннее segmentSize символов
+ * Сегмент по возможности заканчивается переводом строки, чтобы не резать строки пополам
+ * MD5 содержимого считается по ходу чтения: файл читается один раз, память не зависит от его размера
+ */
+class StreamingTextReader implements Closeable {
+    private final DigestInputStream input;
+    private final Reader reader;
+    private final char[] buffer;
+    // символов в буфере: хвост после последнего перевода строки переходит в следующий сегмент
+    private int length;
+    private boolean eof;
+
+    StreamingTextReader(final Resource resource, final int segmentSize) throws IOException {
+        try {
+            this.input = new DigestInputStream(resource.getInputStream(), MessageDigest.getInstance("MD5"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not supported", e);
+        }
+        this.reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+        this.buffer = new char[segmentSize];
+    }
+
+    /**
+     * Следующий сегмент текста
+     *
+     * @return сегмент или null, если файл прочитан полностью
+     */
+    String nextSegment() throws IOException {
+        while (!eof && length < buffer.length) {
+            final var read = reader.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                eof = true;
+            } else {
+                length += read;
+            }
+        }
+        if (length == 0) {
+            return null;
+        }
+        var end = length;
+        if (!eof) {
+            final var lineEnd = lastLineEnd();
+            if (lineEnd > 0) {
+                end = lineEnd;
+            } else if (Character.isHighSurrogate(buffer[end - 1])) {
+                // строка длиннее сегмента: режем по символам, но не посередине суррогатной пары
+                end--;
+            }
+        }
+        final var segment = new String(buffer, 0, end);
+        System.arraycopy(buffer, end, buffer, 0, length - end);
+        length -= end;
+        return segment;
+    }
+
+    /**
+     * MD5 прочитанного содержимого, доступен после того, как nextSegment вернул null
+     *
+     * @return hex строка, как DigestUtils.md5DigestAsHex
+     */
+    String digest() {
+        if (!eof || length > 0) {
+            throw new IllegalStateException("File is not read to the end");
+        }
+        return HexFormat.of().formatHex(input.getMessageDigest().digest());
+    }
+
+    private int lastLineEnd() {
+        for (var i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
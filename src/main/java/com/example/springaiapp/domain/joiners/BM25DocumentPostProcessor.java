@@ -1,37 +1,29 @@
 package com.example.springaiapp.domain.joiners;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
-
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.en.EnglishAnalyzer;
-import org.apache.lucene.analysis.ru.RussianAnalyzer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
 import org.springframework.ai.document.Document;
 import org.springframework.ai.rag.Query;
 import org.springframework.ai.rag.postretrieval.document.DocumentPostProcessor;
 import org.springframework.lang.NonNull;
 
-import com.github.pemistahl.lingua.api.Language;
-import com.github.pemistahl.lingua.api.LanguageDetector;
-import com.github.pemistahl.lingua.api.LanguageDetectorBuilder;
+import com.example.springaiapp.domain.service.ChunkTermVectorService;
+import com.example.springaiapp.domain.service.TextAnalysisService;
 
 import lombok.Builder;
 
+/**
+ * Переранжирование найденных документов по BM25
+ * Термины запроса интернируются в int id, частоты хранятся в примитивных массивах,
+ * score каждого документа считается один раз, top-limit выбирается ограниченной кучей
+ */
 @Builder
 public class BM25DocumentPostProcessor implements DocumentPostProcessor {
 
-    @Builder.Default
-    private static final LanguageDetector languageDetector = LanguageDetectorBuilder
-            .fromLanguages(Language.ENGLISH, Language.RUSSIAN)
-            .build();
+    private final TextAnalysisService textAnalysisService;
+    private final ChunkTermVectorService chunkTermVectorService;
 
     // BM25 parameters
     @Builder.Default
@@ -43,133 +35,142 @@ public class BM25DocumentPostProcessor implements DocumentPostProcessor {
 
     @Override
     @NonNull
-    public List<Document> process(Query query, List<Document> documents) {
+    public List<Document> process(@NonNull Query query, @NonNull List<Document> documents) {
         return rerank(documents, query.text(), limit);
     }
 
-
-    private List<Document> rerank(List<Document> corpus, String query, int limit) {
-
+    private List<Document> rerank(final List<Document> corpus, final String query, final int limit) {
         if (corpus == null || corpus.isEmpty()) {
             return new ArrayList<>();
         }
 
-        // Compute corpus statistics
-        CorpusStats stats = computeCorpusStats(corpus);
+        // интернируем термины запроса: term -> id, для каждого id считаем кратность в запросе
+        final var termIds = new HashMap<String, Integer>();
+        final var queryTokens = textAnalysisService.tokenize(query);
+        final var queryTermCounts = new int[queryTokens.size()];
+        for (final var token : queryTokens) {
+            final var termId = termIds.computeIfAbsent(token, it -> termIds.size());
+            queryTermCounts[termId]++;
+        }
 
-        // Tokenize query
-        List<String> queryTerms = tokenize(query);
+        final var termCount = termIds.size();
+        final var terms = new String[termCount];
+        termIds.forEach((term, termId) -> terms[termId] = term);
+        final var totalDocs = corpus.size();
+        // tf хранится плоским массивом документ x термин запроса,
+        // термины документа, которых нет в запросе, на score не влияют и не хранятся
+        final var tf = new int[totalDocs * termCount];
+        final var docFreq = new int[termCount];
+        final var docLengths = new int[totalDocs];
+        long totalLength = 0;
+
+        for (var doc = 0; doc < totalDocs; doc++) {
+            // вектор терминов чанка вычислен при загрузке (metadata) или взят из кэша,
+            // повторная токенизация и определение языка не выполняются
+            final var termVector = chunkTermVectorService.getTermVector(corpus.get(doc));
+            final var termFrequencies = termVector.getTermFrequencies();
+            docLengths[doc] = termVector.getLength();
+            totalLength += termVector.getLength();
+            final var offset = doc * termCount;
+            for (var term = 0; term < termCount; term++) {
+                final var termFrequency = termFrequencies.get(terms[term]);
+                if (termFrequency != null) {
+                    tf[offset + term] = termFrequency;
+                    docFreq[term]++;
+                }
+            }
+        }
 
-        // Score and sort documents
-        return corpus.stream()
-                .sorted((d1, d2) -> Double.compare(
-                        score(queryTerms, d2, stats),
-                        score(queryTerms, d1, stats)
-                ))
-                .limit(limit)
-                .collect(Collectors.toList());
-    }
+        // BM25 IDF calculation редкость слова - оно поднимает
+        final var idf = new double[termCount];
+        for (var term = 0; term < termCount; term++) {
+            idf[term] = queryTermCounts[term]
+                    * Math.log(1 + (totalDocs - docFreq[term] + 0.5) / (docFreq[term] + 0.5));
+        }
 
-    private CorpusStats computeCorpusStats(List<Document> corpus) {
-        Map<String, Integer> docFreq = new HashMap<>();
-        Map<Document, List<String>> tokenizedDocs = new HashMap<>();
-        int totalLength = 0;
-        int totalDocs = corpus.size();
-
-        // Process each document
-        for (Document doc : corpus) {
-            List<String> tokens = tokenize(doc.getText());
-            tokenizedDocs.put(doc, tokens);
-            totalLength += tokens.size();
-
-            // Update document frequencies
-            Set<String> uniqueTerms = new HashSet<>(tokens);
-            for (String term : uniqueTerms) {
-                docFreq.put(term, docFreq.getOrDefault(term, 0) + 1);
+        final var avgDocLength = (double) totalLength / totalDocs;
+        final var scores = new double[totalDocs];
+        for (var doc = 0; doc < totalDocs; doc++) {
+            final var lengthNorm = K * (1 - B + B * docLengths[doc] / avgDocLength);
+            final var offset = doc * termCount;
+            var score = 0.0;
+            for (var term = 0; term < termCount; term++) {
+                final var termFrequency = tf[offset + term];
+                if (termFrequency != 0) {
+                    score += idf[term] * (termFrequency * (K + 1) / (termFrequency + lengthNorm));
+                }
             }
+            scores[doc] = score;
         }
 
-        double avgDocLength = (double) totalLength / totalDocs;
-
-        return new CorpusStats(docFreq, tokenizedDocs, avgDocLength, totalDocs);
+        return selectTop(corpus, scores, Math.min(limit, totalDocs));
     }
 
-    private double score(List<String> queryTerms, Document doc, CorpusStats stats) {
-        List<String> tokens = stats.tokenizedDocs.get(doc);
-        if (tokens == null) {
-            return 0.0;
+    // выбор top-k через min-кучу размера k: O(n log k) вместо полной сортировки
+    // при равных score выше документ, который retriever вернул раньше
+    private List<Document> selectTop(final List<Document> corpus, final double[] scores, final int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
         }
-
-        // Calculate term frequencies for this document
-        Map<String, Integer> tfMap = new HashMap<>();
-        for (String token : tokens) {
-            tfMap.put(token, tfMap.getOrDefault(token, 0) + 1);
+        final var heap = new int[k];
+        var size = 0;
+        for (var doc = 0; doc < scores.length; doc++) {
+            if (size < k) {
+                heap[size] = doc;
+                siftUp(heap, size++, scores);
+            } else if (isWorse(heap[0], doc, scores)) {
+                heap[0] = doc;
+                siftDown(heap, size, scores);
+            }
         }
 
-        int docLength = tokens.size();
-        double score = 0.0;
-
-        // Calculate BM25 score
-        for (String term : queryTerms) {
-            int tf = tfMap.getOrDefault(term, 0); //просто его count - то есть этого влияет на его вес в документе
-            int df = stats.docFreq.getOrDefault(term, 1);
-
-            // BM25 IDF calculation редкость слова - оно поднимает
-            double idf = Math.log(1 + (stats.totalDocs - df + 0.5) / (df + 0.5));
-
-            // BM25 term score calculation
-            double numerator = tf * (K + 1);
-            double denominator = tf + K * (1 - B + B * docLength / stats.avgDocLength);
-            score += idf * (numerator / denominator);
+        // извлекаем от худшего к лучшему и заполняем результат с конца
+        final var result = new Document[size];
+        while (size > 0) {
+            result[size - 1] = corpus.get(heap[0]);
+            heap[0] = heap[--size];
+            siftDown(heap, size, scores);
         }
-
-        return score;
+        return new ArrayList<>(List.of(result));
     }
 
-    private List<String> tokenize(String text) {
-        List<String> tokens = new ArrayList<>();
-        Analyzer analyzer = detectLanguageAnalyzer(text);
+    private static boolean isWorse(final int a, final int b, final double[] scores) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && a > b);
+    }
 
-        try (TokenStream stream = analyzer.tokenStream(null, text)) {
-            stream.reset();
-            while (stream.incrementToken()) {
-                tokens.add(stream.getAttribute(CharTermAttribute.class).toString());
+    private static void siftUp(final int[] heap, int index, final double[] scores) {
+        final var value = heap[index];
+        while (index > 0) {
+            final var parent = (index - 1) >>> 1;
+            if (!isWorse(value, heap[parent], scores)) {
+                break;
             }
-            stream.end();
-        } catch (IOException e) {
-            throw new RuntimeException("Tokenization failed", e);
+            heap[index] = heap[parent];
+            index = parent;
         }
-
-        return tokens;
+        heap[index] = value;
     }
 
-    private Analyzer detectLanguageAnalyzer(String text) {
-        Language lang = languageDetector.detectLanguageOf(text);
-        if (lang == Language.ENGLISH) {
-            return new EnglishAnalyzer();
-        } else if (lang == Language.RUSSIAN) {
-            return new RussianAnalyzer();
-        } else {
-            // Fallback to English analyzer for unsupported languages
-            return new EnglishAnalyzer();
+    private static void siftDown(final int[] heap, final int size, final double[] scores) {
+        if (size == 0) {
+            return;
         }
-    }
-
-    // Inner class to hold corpus statistics
-    private class CorpusStats {
-        final Map<String, Integer> docFreq;
-        final Map<Document, List<String>> tokenizedDocs;
-        final double avgDocLength;
-        final int totalDocs;
-
-        CorpusStats(Map<String, Integer> docFreq,
-                    Map<Document, List<String>> tokenizedDocs,
-                    double avgDocLength,
-                    int totalDocs) {
-            this.docFreq = docFreq;
-            this.tokenizedDocs = tokenizedDocs;
-            this.avgDocLength = avgDocLength;
-            this.totalDocs = totalDocs;
+        final var value = heap[0];
+        var index = 0;
+        while (true) {
+            var child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && isWorse(heap[child + 1], heap[child], scores)) {
+                child++;
+            }
+            if (!isWorse(heap[child], value, scores)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
         }
+        heap[index] = value;
     }
 }
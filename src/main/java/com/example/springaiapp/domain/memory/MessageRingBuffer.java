@@ -0,0 +1,128 @@
+package com.example.springaiapp.domain.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.ai.chat.messages.Message;
+
+import com.example.springaiapp.domain.model.ChatSummaryModel;
+
+/**
+ * Кольцевой буфер последних capacity сообщений чата - окно памяти модели
+ * Добавление и чтение - O(capacity), без обращения к бд
+ * Сообщения идут в порядке добавления; сообщение, id которого уже есть в буфере, пропускается,
+ * поэтому запись, пересекшаяся с загрузкой буфера из бд, не дублирует сообщения
+ * (id из пулов последовательности растут только в пределах экземпляра, поэтому сравниваются на равенство)
+ * В режиме бюджета токенов вместе с окном хранится краткое содержание начала чата
+ */
+public class MessageRingBuffer {
+    private final Message[] messages;
+    private final long[] ids;
+    // индекс самого старого сообщения
+    private int head;
+    private int size;
+    private ChatSummaryModel summary;
+    // id последнего вытесненного из буфера сообщения, 0 - вытеснений не было
+    private long lastEvictedId;
+
+    /**
+     * Сообщение окна вместе с id в бд
+     *
+     * @param id      id сообщения в бд
+     * @param message сообщение
+     */
+    public record Entry(long id, Message message) {
+    }
+
+    public MessageRingBuffer(final int capacity) {
+        this.messages = new Message[capacity];
+        this.ids = new long[capacity];
+    }
+
+    /**
+     * Добавление сообщения, при заполненном буфере вытесняется самое старое
+     *
+     * @param id      id сообщения в бд
+     * @param message сообщение
+     */
+    public synchronized void add(final long id, final Message message) {
+        if (messages.length == 0 || indexOf(id) >= 0) {
+            return;
+        }
+        final int index;
+        if (size < messages.length) {
+            index = (head + size) % messages.length;
+            size++;
+        } else {
+            index = head;
+            head = (head + 1) % messages.length;
+            lastEvictedId = ids[index];
+        }
+        messages[index] = message;
+        ids[index] = id;
+    }
+
+    /**
+     * Сообщения от старых к новым
+     *
+     * @return копия окна
+     */
+    public synchronized List<Message> toList() {
+        final var result = new ArrayList<Message>(size);
+        for (var i = 0; i < size; i++) {
+            result.add(messages[(head + i) % messages.length]);
+        }
+        return result;
+    }
+
+    /**
+     * Сообщения с id от старых к новым
+     *
+     * @return копия окна
+     */
+    public synchronized List<Entry> entries() {
+        final var result = new ArrayList<Entry>(size);
+        for (var i = 0; i < size; i++) {
+            final var index = (head + i) % messages.length;
+            result.add(new Entry(ids[index], messages[index]));
+        }
+        return result;
+    }
+
+    /**
+     * Краткое содержание начала чата
+     *
+     * @return краткое содержание или null
+     */
+    public synchronized ChatSummaryModel getSummary() {
+        return summary;
+    }
+
+    /**
+     * Замена краткого содержания
+     *
+     * @param summary краткое содержание
+     */
+    public synchronized void setSummary(final ChatSummaryModel summary) {
+        this.summary = summary;
+    }
+
+    /**
+     * Последнее вытесненное из буфера сообщение: более старые сообщения чата есть только в бд
+     *
+     * @return id сообщения или 0, если буфер не переполнялся
+     */
+    public synchronized long getLastEvictedId() {
+        return lastEvictedId;
+    }
+
+    // позиция от старых к новым или -1, capacity - десятки сообщений, поиск линейный
+    private int indexOf(final long id) {
+        for (var i = 0; i < size; i++) {
+            if (ids[(head + i) % messages.length] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
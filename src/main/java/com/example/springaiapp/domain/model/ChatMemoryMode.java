@@ -0,0 +1,15 @@
+package com.example.springaiapp.domain.model;
+
+/**
+ * Способ выбора окна памяти чата
+ */
+public enum ChatMemoryMode {
+    /**
+     * Последние max-messages сообщений
+     */
+    MESSAGES,
+    /**
+     * Последние сообщения в пределах бюджета токенов, вытесненные сообщения сжимаются в краткое содержание
+     */
+    TOKENS
+}
@@ -0,0 +1,15 @@
+package com.example.springaiapp.domain.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Model краткого содержания начала чата
+ * Покрывает сообщения чата до сообщения lastMessageId включительно (по порядку в чате, а не по значению id)
+ */
+@Data
+@Builder
+public class ChatSummaryModel {
+    private final String content;
+    private final long lastMessageId;
+}
@@ -0,0 +1,29 @@
+package com.example.springaiapp.domain.model;
+
+import java.time.Instant;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Снимок прогресса фоновой загрузки базы знаний
+ * Immutable модель данных
+ */
+@Data
+@Builder
+public class IngestionProgressModel {
+    private final IngestionState state;
+    // false - база знаний пуста и первая загрузка еще идет
+    private final boolean knowledgeBaseReady;
+    private final long filesTotal;
+    private final long filesSkipped;
+    private final long filesDone;
+    private final long filesPending;
+    private final long filesFailed;
+    private final long chunksWritten;
+    private final long chunksDeleted;
+    private final double chunksPerSecond;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final Long etaSeconds;
+}
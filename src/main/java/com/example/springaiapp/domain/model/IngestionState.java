@@ -0,0 +1,14 @@
+package com.example.springaiapp.domain.model;
+
+/**
+ * Состояние фоновой загрузки базы знаний
+ */
+public enum IngestionState {
+    // загрузка файлов отключена (app.file-content-load.enabled)
+    DISABLED,
+    // загрузка еще не запускалась
+    IDLE,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,11 @@
+package com.example.springaiapp.domain.model;
+
+/**
+ * Движок лексического поиска по базе знаний
+ */
+public enum LexicalEngine {
+    // инвертированный BM25 индекс в памяти приложения (LexicalIndexService)
+    MEMORY,
+    // полнотекстовый GIN индекс по vector_store.content_tsv в PostgreSQL
+    POSTGRES
+}
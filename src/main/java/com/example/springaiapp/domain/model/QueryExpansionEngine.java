@@ -0,0 +1,11 @@
+package com.example.springaiapp.domain.model;
+
+/**
+ * Движок расширения запросов перед поиском
+ */
+public enum QueryExpansionEngine {
+    // расширение через chat модель (ExpansionQueryTransformer)
+    LLM,
+    // расширение по таблице совместной встречаемости терминов базы знаний, без обращения к модели
+    COOCCURRENCE
+}
@@ -0,0 +1,20 @@
+package com.example.springaiapp.domain.model;
+
+import java.util.Map;
+
+import com.github.pemistahl.lingua.api.Language;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Model лексического представления чанка
+ * Язык и частоты терминов (после lucene анализа) для BM25
+ */
+@Data
+@Builder
+public class TermVectorModel {
+    private final Language language;
+    private final Map<String, Integer> termFrequencies;
+    private final int length;
+}
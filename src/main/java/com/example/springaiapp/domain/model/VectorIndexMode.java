@@ -0,0 +1,15 @@
+package com.example.springaiapp.domain.model;
+
+/**
+ * Режим хранения индекса векторного поиска по vector_store
+ */
+public enum VectorIndexMode {
+    // HNSW по полноразмерным float32 эмбеддингам
+    FULL,
+    // HNSW по float16 проекции, кандидаты пересчитываются по float32
+    HALFVEC,
+    // HNSW по бинарному квантованию (1 бит на координату, расстояние Хэмминга)
+    BINARY,
+    // HNSW по первым N координатам (Matryoshka) во float16
+    MATRYOSHKA
+}
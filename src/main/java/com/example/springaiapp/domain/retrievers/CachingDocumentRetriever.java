@@ -0,0 +1,47 @@
+package com.example.springaiapp.domain.retrievers;
+
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.lang.NonNull;
+
+import com.example.springaiapp.domain.service.KnowledgeBaseVersionService;
+import com.example.springaiapp.domain.utils.HashUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import lombok.Builder;
+
+/**
+ * Кэш результатов поиска
+ * Поиск - чистая функция от текста запроса, параметров поиска и версии базы знаний,
+ * поэтому ключ: поколение базы знаний + хеш запроса + topK + порог + фильтр
+ * После загрузки нового контента поколение меняется, и старые записи больше не используются
+ * (вытесняются по размеру и TTL)
+ */
+@Builder
+public class CachingDocumentRetriever implements DocumentRetriever {
+
+    private final DocumentRetriever documentRetriever;
+    private final KnowledgeBaseVersionService knowledgeBaseVersionService;
+    private final Cache<String, List<Document>> retrievalCache;
+    private final int topK;
+    private final double similarityThreshold;
+
+    @Override
+    @NonNull
+    public List<Document> retrieve(@NonNull Query query) {
+        return retrievalCache.get(key(query), it -> documentRetriever.retrieve(query));
+    }
+
+    private String key(final Query query) {
+        final var filter = query.context().get(VectorStoreDocumentRetriever.FILTER_EXPRESSION);
+        return knowledgeBaseVersionService.getGeneration()
+                + ":" + HashUtils.sha256Hex(query.text())
+                + ":" + topK
+                + ":" + similarityThreshold
+                + ":" + (filter != null ? filter : "");
+    }
+}
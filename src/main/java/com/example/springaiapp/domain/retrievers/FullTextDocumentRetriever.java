@@ -0,0 +1,29 @@
+package com.example.springaiapp.domain.retrievers;
+
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.lang.NonNull;
+
+import com.example.springaiapp.infrastracture.repository.VectorStoreRepository;
+
+import lombok.Builder;
+
+/**
+ * Лексический поиск средствами PostgreSQL (tsvector + GIN, ранжирование ts_rank_cd)
+ * Кандидаты приходят сразу из БД и не требуют индекса в памяти приложения
+ */
+@Builder
+public class FullTextDocumentRetriever implements DocumentRetriever {
+    private final VectorStoreRepository vectorStoreRepository;
+    @Builder.Default
+    private final int topK = 10;
+
+    @Override
+    @NonNull
+    public List<Document> retrieve(@NonNull Query query) {
+        return vectorStoreRepository.searchFullText(query.text(), topK);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.springaiapp.domain.retrievers;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.lang.NonNull;
+
+import lombok.Builder;
+
+/**
+ * Гибридный поиск: векторный и лексический retriever выполняются параллельно
+ * (на переданном executor'е), результаты объединяются через reciprocal rank fusion
+ * или взвешенную сумму нормализованных score
+ * Время поиска равно времени самой медленной ветки, а не их сумме
+ */
+@Builder
+public class HybridDocumentRetriever implements DocumentRetriever {
+
+    public enum FusionStrategy {
+        // score = sum(weight / (k + rank)), не зависит от шкал score разных retriever'ов
+        RRF,
+        // score = sum(weight * min-max нормализованный score)
+        WEIGHTED
+    }
+
+    private final DocumentRetriever vectorRetriever;
+    private final DocumentRetriever lexicalRetriever;
+    @Builder.Default
+    private final FusionStrategy fusionStrategy = FusionStrategy.RRF;
+    // сглаживающая константа RRF, 60 - значение из оригинальной статьи
+    @Builder.Default
+    private final int rrfK = 60;
+    @Builder.Default
+    private final double vectorWeight = 1.0;
+    @Builder.Default
+    private final double lexicalWeight = 1.0;
+    // управляемый контекстом пул, retriever его не закрывает
+    private final Executor executor;
+
+    @Override
+    @NonNull
+    public List<Document> retrieve(@NonNull Query query) {
+        final var vectorFuture = CompletableFuture.supplyAsync(() -> vectorRetriever.retrieve(query), executor);
+        final var lexicalFuture = CompletableFuture.supplyAsync(() -> lexicalRetriever.retrieve(query), executor);
+        return fuse(vectorFuture.join(), lexicalFuture.join());
+    }
+
+    private List<Document> fuse(final List<Document> vectorDocuments, final List<Document> lexicalDocuments) {
+        final var scores = new HashMap<String, Double>();
+        // первый встреченный экземпляр документа сохраняем (у векторного есть distance в metadata)
+        final var documents = new LinkedHashMap<String, Document>();
+        accumulate(vectorDocuments, vectorWeight, scores, documents);
+        accumulate(lexicalDocuments, lexicalWeight, scores, documents);
+        return documents.values().stream()
+                .map(it -> it.mutate().score(scores.get(it.getId())).build())
+                .sorted(Comparator.comparing(Document::getScore).reversed())
+                .toList();
+    }
+
+    private void accumulate(final List<Document> ranked, final double weight,
+            final Map<String, Double> scores, final Map<String, Document> documents) {
+        final var max = ranked.stream().mapToDouble(HybridDocumentRetriever::scoreOf).max().orElse(0.0);
+        final var min = ranked.stream().mapToDouble(HybridDocumentRetriever::scoreOf).min().orElse(0.0);
+        for (var rank = 0; rank < ranked.size(); rank++) {
+            final var document = ranked.get(rank);
+            final var fused = switch (fusionStrategy) {
+                case RRF -> weight / (rrfK + rank + 1);
+                case WEIGHTED -> weight * (max > min ? (scoreOf(document) - min) / (max - min) : 1.0);
+            };
+            scores.merge(document.getId(), fused, Double::sum);
+            documents.putIfAbsent(document.getId(), document);
+        }
+    }
+
+    private static double scoreOf(final Document document) {
+        return document.getScore() != null ? document.getScore() : 0.0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.springaiapp.domain.retrievers;
+
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.lang.NonNull;
+
+import com.example.springaiapp.domain.service.LexicalIndexService;
+
+import lombok.Builder;
+
+/**
+ * Лексический (BM25) поиск по всей базе знаний
+ * Находит точные совпадения (идентификаторы, коды ошибок), которые пропускают эмбеддинги
+ */
+@Builder
+public class LexicalDocumentRetriever implements DocumentRetriever {
+    private final LexicalIndexService lexicalIndexService;
+    @Builder.Default
+    private final int topK = 10;
+
+    @Override
+    @NonNull
+    public List<Document> retrieve(@NonNull Query query) {
+        return lexicalIndexService.search(query.text(), topK);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.springaiapp.domain.retrievers;
+
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.lang.NonNull;
+
+import com.example.springaiapp.domain.model.VectorIndexMode;
+import com.example.springaiapp.infrastracture.repository.VectorStoreRepository;
+
+import lombok.Builder;
+
+/**
+ * Векторный поиск по квантованному / усеченному HNSW индексу с пересчетом score
+ * Первый проход выбирает topK * rescoreMultiplier кандидатов по компактному индексу,
+ * затем кандидаты упорядочиваются по косинусной близости полноразмерных эмбеддингов
+ * Порог близости применяется к пересчитанному score, как в VectorStoreDocumentRetriever
+ */
+@Builder
+public class QuantizedVectorDocumentRetriever implements DocumentRetriever {
+
+    private final VectorStoreRepository vectorStoreRepository;
+    private final EmbeddingModel embeddingModel;
+    private final VectorIndexMode mode;
+    @Builder.Default
+    private final int dimensions = 1024;
+    @Builder.Default
+    private final int matryoshkaDimensions = 512;
+    @Builder.Default
+    private final int rescoreMultiplier = 4;
+    @Builder.Default
+    private final int topK = 10;
+    @Builder.Default
+    private final double similarityThreshold = 0.0;
+
+    @Override
+    @NonNull
+    public List<Document> retrieve(@NonNull Query query) {
+        return vectorStoreRepository.searchByEmbedding(mode, embeddingModel.embed(query.text()),
+                dimensions, matryoshkaDimensions, topK * rescoreMultiplier, topK)
+                .stream()
+                .filter(it -> it.getScore() >= similarityThreshold)
+                .toList();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.springaiapp.domain.retrievers;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.lang.NonNull;
+
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Спекулятивное расширение запроса с дедлайном
+ * Поиск по исходному запросу стартует сразу, расширение запроса выполняется параллельно
+ * Если расширение уложилось в дедлайн, выполняется второй поиск по расширенному запросу
+ * и результаты объединяются, иначе используется только результат по исходному запросу
+ * Время до генерации ограничено сверху: deadline + время поиска
+ * Опоздавшее расширение прерывается: на виртуальном потоке прерывание закрывает сокет HTTP запроса,
+ * и модель перестает генерировать, не занимая слот Ollama, нужный для ответа
+ */
+@Slf4j
+@Builder
+public class SpeculativeExpansionDocumentRetriever implements DocumentRetriever {
+
+    private final DocumentRetriever documentRetriever;
+    private final QueryTransformer queryTransformer;
+    @Builder.Default
+    private final Duration deadline = Duration.ofMillis(1500);
+    // управляемый контекстом пул виртуальных потоков, retriever его не закрывает
+    private final AsyncTaskExecutor executor;
+
+    @Override
+    @NonNull
+    public List<Document> retrieve(@NonNull Query query) {
+        final var rawFuture = CompletableFuture.supplyAsync(() -> documentRetriever.retrieve(query), executor);
+        final var expansionFuture = executor.submit(() -> queryTransformer.transform(query));
+
+        final var expandedQuery = awaitExpansion(expansionFuture);
+        if (expandedQuery == null || expandedQuery.text().equals(query.text())) {
+            return rawFuture.join();
+        }
+        final var expandedDocuments = documentRetriever.retrieve(expandedQuery);
+        return merge(rawFuture.join(), expandedDocuments);
+    }
+
+    private Query awaitExpansion(final Future<Query> expansionFuture) {
+        try {
+            return expansionFuture.get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            expansionFuture.cancel(true);
+            log.debug("Query expansion missed deadline {}, cancelled, using raw query results", deadline);
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("Query expansion failed, using raw query results", e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            expansionFuture.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // оба списка получены одним retriever'ом, поэтому score сопоставимы:
+    // для повторяющихся чанков берем лучший score
+    private List<Document> merge(final List<Document> rawDocuments, final List<Document> expandedDocuments) {
+        final var documents = new LinkedHashMap<String, Document>();
+        for (final var document : expandedDocuments) {
+            documents.merge(document.getId(), document, SpeculativeExpansionDocumentRetriever::best);
+        }
+        for (final var document : rawDocuments) {
+            documents.merge(document.getId(), document, SpeculativeExpansionDocumentRetriever::best);
+        }
+        return documents.values().stream()
+                .sorted(Comparator.comparing(SpeculativeExpansionDocumentRetriever::scoreOf).reversed())
+                .toList();
+    }
+
+    private static Document best(final Document a, final Document b) {
+        return scoreOf(b) > scoreOf(a) ? b : a;
+    }
+
+    private static double scoreOf(final Document document) {
+        return document.getScore() != null ? document.getScore() : 0.0;
+    }
+}
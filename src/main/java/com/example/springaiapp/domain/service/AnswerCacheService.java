@@ -0,0 +1,31 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.Optional;
+
+/**
+ * Сервис семантического кэша ответов
+ * Ответ переиспользуется для близких по смыслу вопросов, пока не изменилась база знаний
+ */
+public interface AnswerCacheService {
+
+    /**
+     * Поиск ответа на близкий вопрос
+     *
+     * @param question вопрос пользователя
+     * @return сохраненный ответ, если близость выше порога
+     */
+    Optional<String> find(String question);
+
+    /**
+     * Сохранение ответа на вопрос
+     *
+     * @param question вопрос пользователя
+     * @param answer   ответ модели
+     */
+    void put(String question, String answer);
+
+    /**
+     * Удаление ответов прошлых поколений базы знаний и ответов старше TTL
+     */
+    void evictStale();
+}
@@ -0,0 +1,40 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.Optional;
+
+import com.example.springaiapp.domain.model.ChatSummaryModel;
+
+/**
+ * Сервис кратких содержаний чатов
+ * Сообщения, не вошедшие в бюджет токенов окна памяти, сжимаются моделью в фоне
+ * в одно краткое содержание, которое передается модели вместо них
+ */
+public interface ChatSummaryService {
+
+    /**
+     * Получение краткого содержания чата
+     *
+     * @param chatId идентификатор чата
+     * @return краткое содержание или пустой Optional
+     */
+    Optional<ChatSummaryModel> find(Long chatId);
+
+    /**
+     * Постановка сжатия в фоновую очередь, повторный вызов для чата, который уже сжимается, игнорируется
+     * Сжимаются сообщения из бд после покрытых текущим кратким содержанием (с начала чата, если его нет)
+     * до upToMessageId включительно, в том числе уже вытесненные из буфера окна
+     * Новое краткое содержание сохраняется в бд и в окно памяти чата в кэше
+     *
+     * @param chatId        идентификатор чата
+     * @param previous      текущее краткое содержание или null
+     * @param upToMessageId последнее сообщение, не вошедшее в окно
+     */
+    void compactAsync(Long chatId, ChatSummaryModel previous, long upToMessageId);
+
+    /**
+     * Удаление краткого содержания чата
+     *
+     * @param chatId идентификатор чата
+     */
+    void delete(Long chatId);
+}
@@ -0,0 +1,38 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+
+import com.example.springaiapp.domain.model.TermVectorModel;
+
+/**
+ * Сервис лексических представлений чанков базы знаний
+ * Язык и вектор терминов вычисляются один раз при загрузке и хранятся в metadata vector_store
+ */
+public interface ChunkTermVectorService {
+
+    /**
+     * Добавление языка и вектора терминов в metadata чанков (при загрузке)
+     *
+     * @param chunks чанки документа
+     * @return чанки с дополненными metadata
+     */
+    List<Document> enrich(List<Document> chunks);
+
+    /**
+     * Получение вектора терминов из metadata чанка, либо вычисление, если его там нет
+     *
+     * @param document чанк
+     * @return вектор терминов
+     */
+    TermVectorModel analyze(Document document);
+
+    /**
+     * Получение вектора терминов через ограниченный кэш по id чанка
+     *
+     * @param document чанк
+     * @return вектор терминов
+     */
+    TermVectorModel getTermVector(Document document);
+}
@@ -0,0 +1,42 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+
+/**
+ * Сервис совместной встречаемости терминов базы знаний
+ * Строит таблицу PMI по чанкам vector_store и подбирает связанные термины для расширения запроса
+ */
+public interface CooccurrenceIndexService {
+
+    /**
+     * Полное перестроение таблицы по содержимому vector_store
+     */
+    void rebuild();
+
+    /**
+     * Инкрементальное добавление чанков в таблицу
+     * Чанк с уже учтенным идентификатором заменяется
+     *
+     * @param documents чанки (идентификаторы должны совпадать с vector_store)
+     */
+    void addDocuments(List<Document> documents);
+
+    /**
+     * Инкрементальное удаление чанков из таблицы
+     *
+     * @param ids идентификаторы чанков
+     */
+    void removeDocuments(Collection<String> ids);
+
+    /**
+     * Подбор терминов, чаще всего встречающихся вместе с терминами запроса
+     *
+     * @param query текст запроса
+     * @param limit максимальное количество терминов
+     * @return слова в исходной форме, отсортированные по убыванию связи с запросом
+     */
+    List<String> expand(String query, int limit);
+}
@@ -0,0 +1,33 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Сервис content-addressed кэша эмбеддингов
+ * Ключ - хеш текста чанка и embedding модель, поэтому неизменившиеся чанки не эмбеддятся повторно
+ */
+public interface EmbeddingCacheService {
+
+    /**
+     * Пакетный поиск эмбеддингов
+     *
+     * @param model         embedding модель
+     * @param contentHashes хеши текстов
+     * @return найденные эмбеддинги по хешу
+     */
+    Map<String, float[]> findAll(String model, Collection<String> contentHashes);
+
+    /**
+     * Пакетное сохранение эмбеддингов
+     *
+     * @param model      embedding модель
+     * @param embeddings эмбеддинги по хешу текста
+     */
+    void saveAll(String model, Map<String, float[]> embeddings);
+
+    /**
+     * Удаление эмбеддингов старше TTL
+     */
+    void evictStale();
+}
@@ -1,5 +1,12 @@
 package com.example.springaiapp.domain.service;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.core.io.Resource;
+
+import com.example.springaiapp.domain.ingestion.IngestionProgress;
+
 /*
  * Сервис для загрузки контента из файлов
  * Загружает контент из файлов и сохраняет его в векторное хранилище
@@ -9,8 +16,18 @@ public interface FileContentLoadService  {
 
     /**
      * Загружает контент из файлов и сохраняет его в векторное хранилище
-     * 
+     *
+     * @param progress счетчики прогресса загрузки
+     */
+    void loadFilesContent(IngestionProgress progress);
+
+    /**
+     * Инкрементальная загрузка: только переданные файлы, без просмотра всей базы знаний
+     *
+     * @param resources        новые и измененные файлы
+     * @param deletedFilenames имена удаленных файлов
+     * @param progress         счетчики прогресса загрузки
      */
-    void loadFilesContent();
+    void loadFiles(List<Resource> resources, Collection<String> deletedFilenames, IngestionProgress progress);
 
 }
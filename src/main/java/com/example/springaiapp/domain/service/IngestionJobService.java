@@ -0,0 +1,46 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.core.io.Resource;
+
+import com.example.springaiapp.domain.model.IngestionProgressModel;
+
+/**
+ * Фоновая загрузка базы знаний
+ * Приложение стартует, не дожидаясь загрузки, и отвечает по уже загруженному корпусу
+ */
+public interface IngestionJobService {
+
+    /**
+     * Запуск загрузки в фоне
+     *
+     * @return false если загрузка уже идет или отключена
+     */
+    boolean start();
+
+    /**
+     * Инкрементальная загрузка в фоне: только измененные и удаленные файлы
+     * Ставится в очередь после текущей загрузки
+     *
+     * @param resources        новые и измененные файлы
+     * @param deletedFilenames имена удаленных файлов
+     * @return false если загрузка отключена
+     */
+    boolean submitChanges(List<Resource> resources, Collection<String> deletedFilenames);
+
+    /**
+     * Текущий прогресс загрузки
+     *
+     * @return снимок прогресса
+     */
+    IngestionProgressModel getProgress();
+
+    /**
+     * Готовность к ответам: индексы в памяти построены, база знаний не пуста или первая загрузка завершилась
+     *
+     * @return true если чат может отвечать
+     */
+    boolean isKnowledgeBaseReady();
+}
@@ -0,0 +1,23 @@
+package com.example.springaiapp.domain.service;
+
+/**
+ * Сервис поколения базы знаний
+ * Результаты поиска зависят только от содержимого базы знаний, поэтому кэши поиска
+ * используют поколение в ключе и автоматически устаревают при загрузке нового контента
+ */
+public interface KnowledgeBaseVersionService {
+
+    /**
+     * Текущее поколение базы знаний
+     *
+     * @return номер поколения
+     */
+    long getGeneration();
+
+    /**
+     * Увеличение поколения после изменения базы знаний
+     *
+     * @return новый номер поколения
+     */
+    long increment();
+}
@@ -0,0 +1,41 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+
+/**
+ * Сервис лексического (BM25) поиска по всей базе знаний
+ * Поддерживает инвертированный индекс по всем чанкам vector_store
+ */
+public interface LexicalIndexService {
+
+    /**
+     * Полное перестроение индекса по содержимому vector_store
+     */
+    void rebuild();
+
+    /**
+     * Инкрементальное добавление чанков в индекс
+     *
+     * @param documents чанки (идентификаторы должны совпадать с vector_store)
+     */
+    void addDocuments(List<Document> documents);
+
+    /**
+     * Инкрементальное удаление чанков из индекса
+     *
+     * @param ids идентификаторы чанков
+     */
+    void removeDocuments(Collection<String> ids);
+
+    /**
+     * Поиск чанков по BM25 с глобальными статистиками корпуса
+     *
+     * @param query текст запроса
+     * @param topK  максимальное количество документов
+     * @return документы, отсортированные по убыванию score
+     */
+    List<Document> search(String query, int topK);
+}
@@ -1,5 +1,6 @@
 package com.example.springaiapp.domain.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -43,4 +44,29 @@ public interface LoadedContentService {
      */
     Optional<LoadedContentModel> getLoadedContentById(Long id);
 
+    /**
+     * Замена записи о файле: предыдущие версии файла (другой хеш) удаляются
+     * @param loadedContent актуальная версия файла
+     * @return сохраненный контент
+     */
+    LoadedContentModel replaceLoadedContent(LoadedContentModel loadedContent);
+
+    /**
+     * Имена всех загруженных файлов
+     * @return множество имен файлов
+     */
+    Set<String> getLoadedFilenames();
+
+    /**
+     * Удаление всех версий файлов
+     * @param filenames имена файлов
+     */
+    void deleteLoadedContentByFilenames(Collection<String> filenames);
+
+    /**
+     * Проверка, загружен ли хотя бы один файл
+     * @return true если база знаний не пуста
+     */
+    boolean hasLoadedContent();
+
 }
@@ -58,6 +58,36 @@ public interface MessageService {
      */
     Optional<ResponeMessageDto> getLastMessageInChat(Long chatId);
 
+    /**
+     * Получение последних сообщений в чате (keyset, без OFFSET)
+     * 
+     * @param chatId идентификатор чата
+     * @param limit  количество сообщений
+     * @return сообщения от старых к новым
+     */
+    List<ResponeMessageDto> getLatestMessages(Long chatId, int limit);
+
+    /**
+     * Получение сообщений в чате перед указанным сообщением (курсор)
+     * Время выборки не зависит от глубины истории
+     * 
+     * @param chatId    идентификатор чата
+     * @param messageId идентификатор сообщения-курсора
+     * @param limit     количество сообщений
+     * @return сообщения от старых к новым
+     */
+    List<ResponeMessageDto> getMessagesBefore(Long chatId, Long messageId, int limit);
+
+    /**
+     * Получение сообщений в чате после указанного сообщения (курсор)
+     * 
+     * @param chatId    идентификатор чата
+     * @param messageId идентификатор сообщения-курсора
+     * @param limit     количество сообщений
+     * @return сообщения от старых к новым
+     */
+    List<ResponeMessageDto> getMessagesAfter(Long chatId, Long messageId, int limit);
+
     /**
      * Получение сообщений, созданных после указанной даты в чате
      * 
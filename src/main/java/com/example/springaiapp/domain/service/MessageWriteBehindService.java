@@ -0,0 +1,48 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.ai.chat.messages.Message;
+
+import com.example.springaiapp.infrastracture.entity.MessageEntity;
+
+/**
+ * Отложенная запись сообщений чата (write-behind)
+ * Сообщения попадают в ограниченную очередь в памяти и пишутся в бд пакетами фоновым потоком,
+ * ответ пользователю не ждет коммита. Порядок записи сообщений сохраняется (один поток записи, FIFO)
+ * Пока сообщение не записано, оно доступно памяти модели через pending
+ */
+public interface MessageWriteBehindService {
+
+    /**
+     * Включена ли отложенная запись
+     *
+     * @return true если сообщения нужно передавать в enqueue вместо сохранения
+     */
+    boolean isEnabled();
+
+    /**
+     * Постановка сообщений в очередь записи, при заполненной очереди вызывающий поток ждет
+     * id сущностей назначаются при записи
+     *
+     * @param messages новые сообщения одного или нескольких чатов
+     */
+    void enqueue(List<MessageEntity> messages);
+
+    /**
+     * Еще не попавшие в окно памяти сообщения чата (read-your-writes для памяти модели)
+     *
+     * @param chatId    идентификатор чата
+     * @param windowIds id сообщений окна памяти
+     * @return сообщения от старых к новым
+     */
+    List<Message> pending(Long chatId, Set<Long> windowIds);
+
+    /**
+     * Отмена записи сообщений чата, еще не записанных в бд (удаление сообщений или чата)
+     *
+     * @param chatId идентификатор чата
+     */
+    void discard(Long chatId);
+}
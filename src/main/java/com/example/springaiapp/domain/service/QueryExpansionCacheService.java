@@ -0,0 +1,33 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.Optional;
+
+/**
+ * Сервис кэширования расширений запросов (ExpansionQueryTransformer)
+ * Расширение детерминировано (temperature 0, topK 1), поэтому результат можно переиспользовать
+ */
+public interface QueryExpansionCacheService {
+
+    /**
+     * Получение расширения запроса из кэша
+     *
+     * @param query текст запроса
+     * @param model модель, выполняющая расширение
+     * @return расширенный запрос или пустой Optional
+     */
+    Optional<String> get(String query, String model);
+
+    /**
+     * Сохранение расширения запроса в кэш
+     *
+     * @param query     текст запроса
+     * @param model     модель, выполнившая расширение
+     * @param expansion расширенный запрос
+     */
+    void put(String query, String model, String expansion);
+
+    /**
+     * Удаление расширений старше TTL из таблицы второго уровня
+     */
+    void evictStale();
+}
@@ -0,0 +1,48 @@
+package com.example.springaiapp.domain.service;
+
+import java.util.List;
+import java.util.Map;
+
+import com.github.pemistahl.lingua.api.Language;
+
+/**
+ * Сервис лексического анализа текста
+ * Определяет язык текста и разбивает его на термины (lucene analyzers)
+ */
+public interface TextAnalysisService {
+
+    /**
+     * Определение языка текста
+     *
+     * @param text текст
+     * @return язык текста (для неподдерживаемых языков - ENGLISH)
+     */
+    Language detectLanguage(String text);
+
+    /**
+     * Разбиение текста на термины с автоматическим определением языка
+     *
+     * @param text текст
+     * @return список терминов в порядке следования в тексте
+     */
+    List<String> tokenize(String text);
+
+    /**
+     * Разбиение текста на термины анализатором указанного языка
+     *
+     * @param text     текст
+     * @param language язык текста
+     * @return список терминов в порядке следования в тексте
+     */
+    List<String> tokenize(String text, Language language);
+
+    /**
+     * Исходные формы терминов: термин (после стемминга) -> первое встреченное слово текста
+     * Нужны, чтобы дописывать в запрос слова, а не основы
+     *
+     * @param text     текст
+     * @param language язык текста
+     * @return термины в порядке первого появления и их исходные слова в нижнем регистре
+     */
+    Map<String, String> surfaceForms(String text, Language language);
+}
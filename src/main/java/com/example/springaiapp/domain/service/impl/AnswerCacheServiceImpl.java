@@ -0,0 +1,88 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.example.springaiapp.domain.service.AnswerCacheService;
+import com.example.springaiapp.domain.service.KnowledgeBaseVersionService;
+import com.example.springaiapp.infrastracture.repository.AnswerCacheRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Реализация семантического кэша ответов в таблице answer_cache
+ * Эмбеддинг вопроса берется из кэша эмбеддингов запросов, поэтому поиск и сохранение
+ * ответа на один вопрос обращаются к embedding модели один раз
+ * Ответы прошлых поколений удаляются при смене поколения и периодически вместе с ответами старше ttl
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnswerCacheServiceImpl implements AnswerCacheService {
+    private static final String METRIC = "answer.cache";
+
+    private final EmbeddingModel embeddingModel;
+    private final OllamaChatModel ollamaChatModel;
+    private final KnowledgeBaseVersionService knowledgeBaseVersionService;
+    private final AnswerCacheRepository answerCacheRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.chat.answer-cache.similarity-threshold}")
+    private double similarityThreshold;
+    // короткие реплики ("а подробнее?") зависят от контекста диалога, их не кэшируем
+    @Value("${app.chat.answer-cache.min-question-length}")
+    private int minQuestionLength;
+    @Value("${app.chat.answer-cache.ttl}")
+    private Duration ttl;
+
+    @Override
+    public Optional<String> find(final String question) {
+        if (!isCacheable(question)) {
+            return Optional.empty();
+        }
+        final var hit = answerCacheRepository
+                .findNearest(embeddingModel.embed(question), model(), knowledgeBaseVersionService.getGeneration())
+                .filter(it -> it.similarity() >= similarityThreshold);
+        meterRegistry.counter(METRIC, "result", hit.isPresent() ? "hit" : "miss").increment();
+        hit.ifPresent(it -> log.debug("Answer cache hit, similarity {}", it.similarity()));
+        return hit.map(AnswerCacheRepository.AnswerCacheHit::answer);
+    }
+
+    @Override
+    public void put(final String question, final String answer) {
+        if (!isCacheable(question) || !StringUtils.hasText(answer)) {
+            return;
+        }
+        answerCacheRepository.save(question, embeddingModel.embed(question), answer, model(),
+                knowledgeBaseVersionService.getGeneration());
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.chat.answer-cache.cleanup-interval}",
+            initialDelayString = "${app.chat.answer-cache.cleanup-interval}")
+    public void evictStale() {
+        final var deleted = answerCacheRepository.deleteStale(knowledgeBaseVersionService.getGeneration(),
+                LocalDateTime.now().minus(ttl));
+        if (deleted > 0) {
+            log.info("Answer cache: {} stale answers deleted", deleted);
+        }
+    }
+
+    private boolean isCacheable(final String question) {
+        return question != null && question.strip().length() >= minQuestionLength;
+    }
+
+    private String model() {
+        return ollamaChatModel.getDefaultOptions().getModel();
+    }
+}
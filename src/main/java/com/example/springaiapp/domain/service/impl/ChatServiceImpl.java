@@ -3,9 +3,13 @@ package com.example.springaiapp.domain.service.impl;
 import com.example.springaiapp.api.dto.ChatDto;
 import com.example.springaiapp.api.dto.CreateChatRequest;
 import com.example.springaiapp.api.mapper.ChatMapper;
+import com.example.springaiapp.domain.memory.MessageRingBuffer;
 import com.example.springaiapp.domain.service.ChatService;
+import com.example.springaiapp.domain.service.MessageWriteBehindService;
+import com.example.springaiapp.domain.utils.TransactionUtils;
 import com.example.springaiapp.infrastracture.repository.ChatRepository;
 import com.example.springaiapp.infrastracture.repository.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +35,8 @@ public class ChatServiceImpl implements ChatService {
     private final ChatRepository chatRepository;
     private final MessageRepository messageRepository;
     private final ChatMapper chatMapper;
+    private final Cache<String, MessageRingBuffer> chatMemoryCache;
+    private final MessageWriteBehindService messageWriteBehindService;
     
     /**
      * Создание нового чата
@@ -114,8 +120,10 @@ public class ChatServiceImpl implements ChatService {
     @Transactional
     public boolean deleteChat(final Long id) {
         if (chatRepository.existsById(id)) {
-            // Сначала удаляем все сообщения чата
+            // Сначала удаляем все сообщения чата, в том числе еще не записанные
+            messageWriteBehindService.discard(id);
             messageRepository.deleteByChatId(id);
+            TransactionUtils.afterCommit(() -> chatMemoryCache.invalidate(String.valueOf(id)));
             // Затем удаляем сам чат
             chatRepository.deleteById(id);
             return true;
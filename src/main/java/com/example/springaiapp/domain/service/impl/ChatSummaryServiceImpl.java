@@ -0,0 +1,177 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.example.springaiapp.domain.memory.MessageRingBuffer;
+import com.example.springaiapp.domain.model.ChatSummaryModel;
+import com.example.springaiapp.domain.service.ChatSummaryService;
+import com.example.springaiapp.infrastracture.entity.MessageEntity;
+import com.example.springaiapp.infrastracture.repository.ChatSummaryRepository;
+import com.example.springaiapp.infrastracture.repository.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Реализация кратких содержаний чатов
+ * Сжатие выполняется на одном фоновом потоке: вызов модели не задерживает ответ пользователю,
+ * а очередь ограничена числом чатов (для чата в очереди не больше одной задачи)
+ * Новое краткое содержание строится из предыдущего и следующих за ним сообщений из бд, поэтому
+ * модель каждый раз получает ограниченный по размеру текст, а сообщения, вытесненные из буфера окна
+ * до сжатия, не теряются
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatSummaryServiceImpl implements ChatSummaryService {
+    private static final PromptTemplate TEMPLATE = PromptTemplate.builder()
+            .template("""
+                    Составь краткое содержание разговора пользователя с ассистентом.
+                    Сохрани факты, имена, числа, договоренности и открытые вопросы, опусти приветствия и повторы.
+                    Пиши сжато, от третьего лица, не длиннее {maxWords} слов, без вступлений и пояснений.
+
+                    Краткое содержание начала разговора:
+                    {previous}
+
+                    Продолжение разговора:
+                    {messages}
+
+                    Краткое содержание всего разговора:
+                    """)
+            .build();
+    // длинный несжатый участок (сжатие отставало или было выключено) сжимается за несколько проходов
+    private static final int MAX_MESSAGES_PER_COMPACTION = 50;
+
+    private final OllamaChatModel ollamaChatModel;
+    private final ChatSummaryRepository chatSummaryRepository;
+    private final MessageRepository messageRepository;
+    private final MessageMapperService messageMapperService;
+    private final Cache<String, MessageRingBuffer> chatMemoryCache;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("chat-summary").daemon().factory());
+    // чаты, для которых сжатие поставлено в очередь или выполняется
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.chat.memory.summary.max-tokens}")
+    private int maxTokens;
+
+    private ChatClient chatClient;
+
+    @PostConstruct
+    public void init() {
+        chatClient = ChatClient.builder(ollamaChatModel)
+                .defaultOptions(OllamaOptions.builder()
+                        .temperature(0.0)
+                        .numPredict(maxTokens)
+                        .build())
+                .build();
+    }
+
+    @Override
+    public Optional<ChatSummaryModel> find(final Long chatId) {
+        return chatSummaryRepository.findByChatId(chatId);
+    }
+
+    @Override
+    public void compactAsync(final Long chatId, final ChatSummaryModel previous, final long upToMessageId) {
+        if (!pending.add(chatId)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                compact(chatId, previous, upToMessageId);
+            } catch (Exception e) {
+                // сообщения остаются вытесненными, сжатие повторится на следующем ответе
+                log.warn("Failed to summarize chat {}", chatId, e);
+            } finally {
+                pending.remove(chatId);
+            }
+        });
+    }
+
+    private void compact(final Long chatId, final ChatSummaryModel previous, final long upToMessageId) {
+        final var evicted = evictedMessages(chatId, previous, upToMessageId);
+        if (evicted.isEmpty()) {
+            return;
+        }
+        final var messages = evicted.stream()
+                .map(messageMapperService::toMessage)
+                .map(it -> it.getMessageType().getValue() + ": " + it.getText())
+                .collect(Collectors.joining("\n"));
+        final var content = chatClient.prompt()
+                .user(TEMPLATE.render(Map.of(
+                        // около 0.75 слова на токен
+                        "maxWords", maxTokens * 3 / 4,
+                        "previous", previous == null ? "(нет)" : previous.getContent(),
+                        "messages", messages)))
+                .call()
+                .content();
+        if (!StringUtils.hasText(content)) {
+            return;
+        }
+        final var summary = ChatSummaryModel.builder()
+                .content(content.strip())
+                .lastMessageId(evicted.getLast().getId())
+                .build();
+        chatSummaryRepository.upsert(chatId, summary);
+        chatMemoryCache.asMap().computeIfPresent(String.valueOf(chatId), (key, buffer) -> {
+            buffer.setSummary(summary);
+            return buffer;
+        });
+        log.debug("Chat {} summarized up to message {}", chatId, summary.getLastMessageId());
+    }
+
+    // сообщения после покрытых кратким содержанием до upToMessageId включительно, от старых к новым
+    private List<MessageEntity> evictedMessages(final Long chatId, final ChatSummaryModel previous,
+            final long upToMessageId) {
+        final var upTo = messageRepository.findById(upToMessageId).orElse(null);
+        if (upTo == null) {
+            // сообщения чата удалены, пока сжатие стояло в очереди
+            return List.of();
+        }
+        final var from = previous == null ? null
+                : messageRepository.findById(previous.getLastMessageId()).orElse(null);
+        final var limit = Limit.of(MAX_MESSAGES_PER_COMPACTION);
+        final var batch = from == null
+                ? messageRepository.findOldestInChat(chatId, limit)
+                : messageRepository.findNewerInChat(chatId, from.getCreatedAt(), from.getId(), limit);
+        return batch.stream()
+                .takeWhile(it -> !isAfter(it, upTo))
+                .toList();
+    }
+
+    // порядок сообщений чата: created_at, при совпадении id
+    private static boolean isAfter(final MessageEntity message, final MessageEntity other) {
+        final var compared = message.getCreatedAt().compareTo(other.getCreatedAt());
+        return compared > 0 || compared == 0 && message.getId() > other.getId();
+    }
+
+    @Override
+    public void delete(final Long chatId) {
+        chatSummaryRepository.deleteByChatId(chatId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Service;
+
+import com.example.springaiapp.domain.model.TermVectorModel;
+import com.example.springaiapp.domain.service.ChunkTermVectorService;
+import com.example.springaiapp.domain.service.TextAnalysisService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.pemistahl.lingua.api.Language;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Реализация сервиса лексических представлений чанков
+ * Чанки не меняются после загрузки, поэтому вектор терминов можно кэшировать по id
+ */
+@Service
+@RequiredArgsConstructor
+public class ChunkTermVectorServiceImpl implements ChunkTermVectorService {
+    public static final String LANGUAGE_METADATA_KEY = "language";
+    public static final String TERM_FREQUENCIES_METADATA_KEY = "term_frequencies";
+
+    private final TextAnalysisService textAnalysisService;
+    private final Cache<String, TermVectorModel> termVectorCache;
+
+    @Override
+    public List<Document> enrich(final List<Document> chunks) {
+        return chunks.stream()
+                .map(it -> {
+                    final var termVector = compute(it.getText());
+                    termVectorCache.put(it.getId(), termVector);
+                    return it.mutate()
+                            .metadata(LANGUAGE_METADATA_KEY, termVector.getLanguage().name())
+                            .metadata(TERM_FREQUENCIES_METADATA_KEY, termVector.getTermFrequencies())
+                            .build();
+                })
+                .toList();
+    }
+
+    @Override
+    public TermVectorModel analyze(final Document document) {
+        final var metadata = document.getMetadata();
+        if (metadata.get(LANGUAGE_METADATA_KEY) instanceof String language
+                && metadata.get(TERM_FREQUENCIES_METADATA_KEY) instanceof Map<?, ?> termFrequencies) {
+            return fromMetadata(Language.valueOf(language), termFrequencies);
+        }
+        // чанки, загруженные до появления metadata, анализируем на лету
+        return compute(document.getText());
+    }
+
+    @Override
+    public TermVectorModel getTermVector(final Document document) {
+        return termVectorCache.get(document.getId(), it -> analyze(document));
+    }
+
+    private TermVectorModel compute(final String text) {
+        final var language = textAnalysisService.detectLanguage(text);
+        final var termFrequencies = new HashMap<String, Integer>();
+        final var tokens = textAnalysisService.tokenize(text, language);
+        tokens.forEach(term -> termFrequencies.merge(term, 1, Integer::sum));
+        return TermVectorModel.builder()
+                .language(language)
+                .termFrequencies(termFrequencies)
+                .length(tokens.size())
+                .build();
+    }
+
+    // после чтения json из vector_store значения приходят как Number
+    private TermVectorModel fromMetadata(final Language language, final Map<?, ?> metadata) {
+        final var termFrequencies = new HashMap<String, Integer>(metadata.size() * 2);
+        var length = 0;
+        for (final var entry : metadata.entrySet()) {
+            final var tf = ((Number) entry.getValue()).intValue();
+            termFrequencies.put((String) entry.getKey(), tf);
+            length += tf;
+        }
+        return TermVectorModel.builder()
+                .language(language)
+                .termFrequencies(termFrequencies)
+                .length(length)
+                .build();
+    }
+}
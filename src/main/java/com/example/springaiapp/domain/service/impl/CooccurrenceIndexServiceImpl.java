@@ -0,0 +1,269 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.springaiapp.domain.model.QueryExpansionEngine;
+import com.example.springaiapp.domain.service.ChunkTermVectorService;
+import com.example.springaiapp.domain.service.CooccurrenceIndexService;
+import com.example.springaiapp.domain.service.TextAnalysisService;
+import com.example.springaiapp.infrastracture.repository.VectorStoreRepository;
+import com.github.pemistahl.lingua.api.Language;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Таблица совместной встречаемости терминов в чанках базы знаний
+ * Связь терминов оценивается нормированным PMI: npmi(a, b) = ln(p(a,b) / (p(a) p(b))) / -ln p(a,b),
+ * где p - доля чанков, содержащих термин (пару терминов)
+ * Расширение запроса - поиск по хэш-таблицам в памяти, без обращения к модели
+ * Термины интернируются в int id, счетчики хранятся в примитивных картах; для каждого чанка
+ * хранятся id его терминов, поэтому удаление чанка уменьшает счетчики без полного перестроения
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CooccurrenceIndexServiceImpl implements CooccurrenceIndexService {
+    private final TextAnalysisService textAnalysisService;
+    private final ChunkTermVectorService chunkTermVectorService;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private TableState state = new TableState();
+
+    @Value("${app.chat.rag.expansion.engine}")
+    private QueryExpansionEngine expansionEngine;
+    // пары с меньшим числом совместных появлений считаем случайными
+    @Value("${app.chat.rag.expansion.cooccurrence.min-count}")
+    private int minCount;
+    // в пары берутся только самые частые термины чанка: число пар растет квадратично
+    @Value("${app.chat.rag.expansion.cooccurrence.max-terms-per-chunk}")
+    private int maxTermsPerChunk;
+    private boolean enabled;
+
+    // таблица нужна только при расширении запросов без модели
+    // строится в фоне на потоке загрузки базы знаний (IngestionJobServiceImpl), старт контекста ее не ждет
+    @PostConstruct
+    public void init() {
+        enabled = expansionEngine == QueryExpansionEngine.COOCCURRENCE;
+    }
+
+    @Override
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        final var newState = new TableState();
+        vectorStoreRepository.forEachChunk(it -> newState.add(it.getId(), analyze(it)));
+        newState.trim();
+        lock.writeLock().lock();
+        try {
+            state = newState;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Cooccurrence table rebuilt: {} chunks, {} terms", newState.chunks.size(), newState.termIds.size());
+    }
+
+    @Override
+    public void addDocuments(final List<Document> documents) {
+        if (!enabled || documents.isEmpty()) {
+            return;
+        }
+        // анализ текста выполняем до захвата блокировки, чтобы не блокировать расширение запросов
+        final var analyzed = documents.stream()
+                .collect(Collectors.toMap(Document::getId, this::analyze, (a, b) -> b, LinkedHashMap::new));
+        lock.writeLock().lock();
+        try {
+            analyzed.forEach(state::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeDocuments(final Collection<String> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            ids.forEach(state::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> expand(final String query, final int limit) {
+        if (!enabled || limit <= 0) {
+            return List.of();
+        }
+        // язык запроса не определяем: термины обоих анализаторов, лишние просто не найдутся в таблице
+        final var queryTerms = new HashSet<>(textAnalysisService.tokenize(query, Language.RUSSIAN));
+        queryTerms.addAll(textAnalysisService.tokenize(query, Language.ENGLISH));
+        final var scores = new HashMap<String, Double>();
+        lock.readLock().lock();
+        try {
+            final double totalDocs = state.chunks.size();
+            final var queryTermIds = new IntOpenHashSet();
+            queryTerms.forEach(it -> {
+                if (state.termIds.containsKey(it)) {
+                    queryTermIds.add(state.termIds.getInt(it));
+                }
+            });
+            for (final var termId : queryTermIds) {
+                final var pairs = state.pairs.get((int) termId);
+                if (pairs == null) {
+                    continue;
+                }
+                final var termProbability = state.docFreq.getInt(termId) / totalDocs;
+                for (final var pair : pairs.int2IntEntrySet()) {
+                    final var other = pair.getIntKey();
+                    final var count = pair.getIntValue();
+                    if (count < minCount || queryTermIds.contains(other)) {
+                        continue;
+                    }
+                    final var pairProbability = count / totalDocs;
+                    final var otherProbability = state.docFreq.getInt(other) / totalDocs;
+                    // пара встречается во всех чанках - связь не информативна
+                    if (pairProbability >= 1.0) {
+                        continue;
+                    }
+                    final var npmi = Math.log(pairProbability / (termProbability * otherProbability))
+                            / -Math.log(pairProbability);
+                    if (npmi > 0) {
+                        scores.merge(state.terms.get(other), npmi, Double::sum);
+                    }
+                }
+            }
+            // разные термины могут иметь одно исходное слово: дубли убираем до ограничения количества
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .map(it -> state.surfaceForms.get(state.termIds.getInt(it.getKey())))
+                    .distinct()
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // самые частые термины чанка и их исходные слова
+    private Map<String, String> analyze(final Document document) {
+        final var termVector = chunkTermVectorService.analyze(document);
+        final var surfaceForms = textAnalysisService.surfaceForms(document.getText(), termVector.getLanguage());
+        final var result = new HashMap<String, String>();
+        termVector.getTermFrequencies().entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(maxTermsPerChunk)
+                .forEach(it -> result.put(it.getKey(), surfaceForms.getOrDefault(it.getKey(), it.getKey())));
+        return result;
+    }
+
+    // состояние таблицы: словарь терминов, df, симметричные счетчики пар, исходные слова, термины чанков
+    private static class TableState {
+        final Object2IntOpenHashMap<String> termIds = new Object2IntOpenHashMap<>();
+        // id -> термин и исходное слово; id терминов, выпавших из всех чанков, не переиспользуются
+        // до следующего полного перестроения
+        final List<String> terms = new ArrayList<>();
+        final List<String> surfaceForms = new ArrayList<>();
+        final IntArrayList docFreq = new IntArrayList();
+        final Int2ObjectOpenHashMap<Int2IntOpenHashMap> pairs = new Int2ObjectOpenHashMap<>();
+        final Map<String, int[]> chunks = new HashMap<>();
+
+        void add(final String id, final Map<String, String> chunkTerms) {
+            remove(id);
+            final var ids = new int[chunkTerms.size()];
+            var index = 0;
+            for (final var term : chunkTerms.entrySet()) {
+                ids[index++] = termId(term.getKey(), term.getValue());
+            }
+            for (var i = 0; i < ids.length; i++) {
+                docFreq.set(ids[i], docFreq.getInt(ids[i]) + 1);
+                for (var j = i + 1; j < ids.length; j++) {
+                    pairCounts(ids[i]).addTo(ids[j], 1);
+                    pairCounts(ids[j]).addTo(ids[i], 1);
+                }
+            }
+            chunks.put(id, ids);
+        }
+
+        void remove(final String id) {
+            final var ids = chunks.remove(id);
+            if (ids == null) {
+                return;
+            }
+            for (var i = 0; i < ids.length; i++) {
+                for (var j = i + 1; j < ids.length; j++) {
+                    decrementPair(ids[i], ids[j]);
+                    decrementPair(ids[j], ids[i]);
+                }
+                final var df = docFreq.getInt(ids[i]) - 1;
+                docFreq.set(ids[i], df);
+                if (df == 0) {
+                    termIds.removeInt(terms.get(ids[i]));
+                    terms.set(ids[i], null);
+                    surfaceForms.set(ids[i], null);
+                }
+            }
+        }
+
+        // после полного перестроения карты пар сжимаются до фактического размера
+        void trim() {
+            termIds.trim();
+            pairs.trim();
+            pairs.values().forEach(Int2IntOpenHashMap::trim);
+        }
+
+        private int termId(final String term, final String surfaceForm) {
+            if (termIds.containsKey(term)) {
+                return termIds.getInt(term);
+            }
+            final var id = terms.size();
+            termIds.put(term, id);
+            terms.add(term);
+            surfaceForms.add(surfaceForm);
+            docFreq.add(0);
+            return id;
+        }
+
+        private Int2IntOpenHashMap pairCounts(final int termId) {
+            var counts = pairs.get(termId);
+            if (counts == null) {
+                counts = new Int2IntOpenHashMap(4);
+                pairs.put(termId, counts);
+            }
+            return counts;
+        }
+
+        private void decrementPair(final int termId, final int otherId) {
+            final var counts = pairs.get(termId);
+            if (counts.addTo(otherId, -1) == 1) {
+                counts.remove(otherId);
+                if (counts.isEmpty()) {
+                    pairs.remove(termId);
+                }
+            }
+        }
+    }
+}
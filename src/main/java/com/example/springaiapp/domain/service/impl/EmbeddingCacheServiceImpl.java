@@ -0,0 +1,61 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.springaiapp.domain.service.EmbeddingCacheService;
+import com.example.springaiapp.infrastracture.repository.EmbeddingCacheRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Реализация кэша эмбеддингов в таблице embedding_cache
+ * Количество попаданий и промахов публикуется в метрике embedding.cache
+ * Эмбеддинги старше ttl периодически удаляются, при повторной загрузке такие чанки эмбеддятся заново
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EmbeddingCacheServiceImpl implements EmbeddingCacheService {
+    private static final String METRIC = "embedding.cache";
+
+    private final EmbeddingCacheRepository embeddingCacheRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.embedding.cache.ttl}")
+    private Duration ttl;
+
+    @Override
+    public Map<String, float[]> findAll(final String model, final Collection<String> contentHashes) {
+        if (contentHashes.isEmpty()) {
+            return Map.of();
+        }
+        final var found = embeddingCacheRepository.findAll(model, contentHashes);
+        meterRegistry.counter(METRIC, "result", "hit").increment(found.size());
+        meterRegistry.counter(METRIC, "result", "miss").increment(contentHashes.size() - found.size());
+        return found;
+    }
+
+    @Override
+    public void saveAll(final String model, final Map<String, float[]> embeddings) {
+        embeddingCacheRepository.saveAll(model, embeddings);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.embedding.cache.cleanup-interval}",
+            initialDelayString = "${app.embedding.cache.cleanup-interval}")
+    public void evictStale() {
+        final var deleted = embeddingCacheRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+        if (deleted > 0) {
+            log.info("Embedding cache: {} stale embeddings deleted", deleted);
+        }
+    }
+}
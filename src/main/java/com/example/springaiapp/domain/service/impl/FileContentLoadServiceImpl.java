@@ -1,28 +1,42 @@
 package com.example.springaiapp.domain.service.impl;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import org.springframework.ai.reader.TextReader;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.transformer.splitter.TextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.ResourcePatternResolver;
-import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
-import org.springframework.util.DigestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 
+import com.example.springaiapp.domain.ingestion.IngestionPipeline;
+import com.example.springaiapp.domain.ingestion.IngestionProgress;
 import com.example.springaiapp.domain.model.LoadedContentModel;
+import com.example.springaiapp.domain.service.AnswerCacheService;
+import com.example.springaiapp.domain.service.ChunkTermVectorService;
+import com.example.springaiapp.domain.service.CooccurrenceIndexService;
 import com.example.springaiapp.domain.service.FileContentLoadService;
+import com.example.springaiapp.domain.service.KnowledgeBaseVersionService;
+import com.example.springaiapp.domain.service.LexicalIndexService;
 import com.example.springaiapp.domain.service.LoadedContentMapperService;
 import com.example.springaiapp.domain.service.LoadedContentService;
+import com.example.springaiapp.infrastracture.repository.AdvisoryLockRepository;
+import com.example.springaiapp.infrastracture.repository.LoadedContentChunkRepository;
+import com.example.springaiapp.infrastracture.repository.VectorStoreRepository;
 
-import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -34,71 +48,148 @@ public class FileContentLoadServiceImpl implements FileContentLoadService {
     private final LoadedContentService loadedContentService;
     private final LoadedContentMapperService loadedContentMapperService;
     private final ResourcePatternResolver resourcePatternResolver;
-    private final VectorStore vectorStore;
+    private final EmbeddingModel embeddingModel;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final LoadedContentChunkRepository loadedContentChunkRepository;
+    private final AdvisoryLockRepository advisoryLockRepository;
+    private final TransactionTemplate transactionTemplate;
     private final TextSplitter textSplitter;
+    private final LexicalIndexService lexicalIndexService;
+    private final ChunkTermVectorService chunkTermVectorService;
+    private final CooccurrenceIndexService cooccurrenceIndexService;
+    private final KnowledgeBaseVersionService knowledgeBaseVersionService;
+    private final AnswerCacheService answerCacheService;
+    private final MeterRegistry meterRegistry;
 
-    @PostConstruct
-    public void init() {
-        loadFilesContent();
-    }
+    // каталог базы знаний в файловой системе (дополнительно к classpath), пусто - не используется
+    @Value("${app.file-content-load.directory:}")
+    private String directory;
+    @Value("${app.file-content-load.pipeline.queue-capacity}")
+    private int queueCapacity;
+    @Value("${app.file-content-load.pipeline.hash-threads}")
+    private int hashThreads;
+    @Value("${app.file-content-load.pipeline.split-threads}")
+    private int splitThreads;
+    @Value("${app.file-content-load.pipeline.segment-size}")
+    private int segmentSize;
+    @Value("${app.file-content-load.pipeline.embed-threads}")
+    private int embedThreads;
+    @Value("${app.file-content-load.pipeline.embed-batch-size}")
+    private int embedBatchSize;
+    @Value("${app.file-content-load.pipeline.write-threads}")
+    private int writeThreads;
+    @Value("${app.file-content-load.pipeline.write-batch-size}")
+    private int writeBatchSize;
+    @Value("${app.file-content-load.pipeline.linger}")
+    private Duration linger;
+    @Value("${app.file-content-load.bulk-load.enabled}")
+    private boolean bulkLoad;
+    @Value("${app.file-content-load.bulk-load.rebuild-index}")
+    private boolean rebuildIndex;
+    @Value("${app.file-content-load.cluster-locks}")
+    private boolean clusterLocks;
 
     /**
      * Загружает контент из файлов
      * разбивает на чанки и сохраняет в векторное хранилище
      * сохраняет в базу данных
+     * удаляет чанки измененных и удаленных файлов
+     * Запускается фоновой задачей IngestionJobService, а не при старте контекста
      */
     @Override
-    public void loadFilesContent() {
-        // todo подумать как оптимизировать
-        try {
-            final var filesMap = Arrays
-                    .stream(resourcePatternResolver.getResources("classpath*:/knowlegebase/**/*.txt"))
-                    .collect(Collectors.toMap(
-                            resource -> Pair.of(Objects.requireNonNull(resource.getFilename()),
-                                    calculateFileHash(resource)),
-                            Function.identity(), (a, b) -> a));
-            if (filesMap.isEmpty()) {
-                log.info("No files to load");
-                return;
-            }
-            final var loadedContentMap = loadedContentService.getLoadedContentByHashAndFilename(filesMap.keySet())
-                    .stream()
-                    .collect(Collectors.toMap(
-                            it -> Pair.of(it.getFilename(), it.getHash()),
-                            Function.identity(), (a, b) -> a));
+    public void loadFilesContent(final IngestionProgress progress) {
+        final var resources = findResources();
+        if (resources.isEmpty()) {
+            log.info("No files to load");
+            return;
+        }
+        final var pipeline = pipeline(progress);
+        final var loadedContentList = runWithIndexRebuild(pipeline, resources);
+        // файлы, которых больше нет среди ресурсов, удаляются вместе с чанками
+        final var purged = pipeline.purgeDeletedFiles(resources.stream()
+                .map(it -> Objects.requireNonNull(it.getFilename()))
+                .collect(Collectors.toSet()));
+        onKnowledgeBaseChanged(!loadedContentList.isEmpty() || purged > 0);
+    }
 
-            final var loadedContentList = filesMap.entrySet().stream()
-                    .filter(it -> !loadedContentMap.containsKey(it.getKey()))
-                    .map(it -> processResource(it))
-                    .collect(Collectors.toList());
+    @Override
+    public void loadFiles(final List<Resource> resources, final Collection<String> deletedFilenames,
+            final IngestionProgress progress) {
+        final var pipeline = pipeline(progress);
+        final var loadedContentList = resources.isEmpty() ? List.of() : pipeline.run(resources);
+        // файл с тем же именем загружается заново (перенесен между подкаталогами) - он не удален
+        final var deleted = new HashSet<>(deletedFilenames);
+        resources.forEach(it -> deleted.remove(it.getFilename()));
+        final var purged = pipeline.purgeFiles(deleted);
+        onKnowledgeBaseChanged(!loadedContentList.isEmpty() || purged > 0);
+    }
 
-            loadedContentService.addLoadedContentList(loadedContentList);
-        } catch (IOException e) {
-            log.error("Failed to load files content", e);
+    // первичная массовая загрузка в пустую vector_store: HNSW индекс строится один раз после загрузки
+    private List<LoadedContentModel> runWithIndexRebuild(final IngestionPipeline pipeline,
+            final List<Resource> resources) {
+        if (!bulkLoad || !rebuildIndex || !vectorStoreRepository.isEmpty()) {
+            return pipeline.run(resources);
+        }
+        final var indexes = vectorStoreRepository.dropVectorIndexes();
+        log.info("vector_store is empty, {} HNSW indexes dropped until bulk load finishes", indexes.size());
+        try {
+            return pipeline.run(resources);
+        } finally {
+            final var start = System.nanoTime();
+            vectorStoreRepository.createIndexes(indexes);
+            log.info("HNSW indexes rebuilt in {} ms", (System.nanoTime() - start) / 1_000_000);
         }
     }
 
-    private String calculateFileHash(final Resource resource) {
-        try (final var is = resource.getInputStream()) {
-            return DigestUtils.md5DigestAsHex(is);
+    // classpath и, если задан, каталог базы знаний
+    private List<Resource> findResources() {
+        try {
+            final var resources = new ArrayList<>(Arrays.asList(
+                    resourcePatternResolver.getResources("classpath*:/knowlegebase/**/*.txt")));
+            if (StringUtils.hasText(directory)) {
+                resources.addAll(Arrays.asList(resourcePatternResolver.getResources(
+                        Path.of(directory).toAbsolutePath().toUri() + "**/*.txt")));
+            }
+            return resources;
         } catch (IOException e) {
-            throw new RuntimeException("Failed to calculate file hash", e);
+            throw new IllegalStateException("Failed to load files content", e);
+        }
+    }
+
+    private void onKnowledgeBaseChanged(final boolean changed) {
+        // база знаний изменилась - кэши поиска по предыдущему поколению больше не используются
+        if (changed) {
+            knowledgeBaseVersionService.increment();
+            answerCacheService.evictStale();
         }
     }
 
-    private LoadedContentModel processResource(final Map.Entry<Pair<String, String>, Resource> entry) {
-        log.info("Processing resource: {}", entry.getKey().getFirst());
-        // читаем файл и конвертируем в Document - контейнер контента и метададанных документа
-        final var document = new TextReader(entry.getValue()).get();
-        // разбиваем документа на чанки по заданным размерам
-        // размер указан в конфигурации VectorConfiguration
-        final var chunks = textSplitter.apply(document);
-        // с помощью embedding модели конвертируем чанки в вектора
-        // вектора добавляем в векторное хранилище
-        vectorStore.accept(chunks);
-        return loadedContentMapperService.createLoadedContentModel(
-                entry.getKey().getFirst(),
-                entry.getKey().getSecond(),
-                chunks.size());
+    private IngestionPipeline pipeline(final IngestionProgress progress) {
+        return IngestionPipeline.builder()
+                .loadedContentService(loadedContentService)
+                .loadedContentMapperService(loadedContentMapperService)
+                .textSplitter(textSplitter)
+                .chunkTermVectorService(chunkTermVectorService)
+                .embeddingModel(embeddingModel)
+                .vectorStoreRepository(vectorStoreRepository)
+                .loadedContentChunkRepository(loadedContentChunkRepository)
+                .advisoryLockRepository(advisoryLockRepository)
+                .transactionTemplate(transactionTemplate)
+                .lexicalIndexService(lexicalIndexService)
+                .cooccurrenceIndexService(cooccurrenceIndexService)
+                .meterRegistry(meterRegistry)
+                .progress(progress)
+                .queueCapacity(queueCapacity)
+                .hashThreads(hashThreads)
+                .splitThreads(splitThreads)
+                .segmentSize(segmentSize)
+                .embedThreads(embedThreads)
+                .embedBatchSize(embedBatchSize)
+                .writeThreads(writeThreads)
+                .writeBatchSize(writeBatchSize)
+                .linger(linger)
+                .bulkLoad(bulkLoad)
+                .clusterLocks(clusterLocks)
+                .build();
     }
 }
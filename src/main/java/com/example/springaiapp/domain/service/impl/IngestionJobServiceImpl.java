@@ -0,0 +1,148 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import com.example.springaiapp.domain.ingestion.IngestionProgress;
+import com.example.springaiapp.domain.model.IngestionProgressModel;
+import com.example.springaiapp.domain.model.IngestionState;
+import com.example.springaiapp.domain.service.FileContentLoadService;
+import com.example.springaiapp.domain.service.CooccurrenceIndexService;
+import com.example.springaiapp.domain.service.IngestionJobService;
+import com.example.springaiapp.domain.service.LexicalIndexService;
+import com.example.springaiapp.domain.service.LoadedContentService;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Фоновая загрузка базы знаний на выделенном потоке
+ * Стартует после готовности приложения (ApplicationReadyEvent), старт контекста не ждет эмбеддинга
+ * Пока идет загрузка, поиск работает по уже записанным чанкам, поколение базы знаний
+ * увеличивается после завершения
+ * Если при старте загрузки база знаний была пуста, чат не готов до ее завершения
+ * Инкрементальные загрузки (изменения каталога базы знаний) ставятся в ту же очередь
+ * Первой задачей очереди строятся индексы в памяти (BM25, совместная встречаемость): до ее завершения
+ * чат не готов, инкрементальные изменения индексов применяются уже к построенному состоянию
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionJobServiceImpl implements IngestionJobService {
+    private final ObjectProvider<FileContentLoadService> fileContentLoadService;
+    private final LoadedContentService loadedContentService;
+    private final LexicalIndexService lexicalIndexService;
+    private final CooccurrenceIndexService cooccurrenceIndexService;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("ingestion-job").factory());
+
+    private volatile IngestionState state = IngestionState.IDLE;
+    private volatile IngestionProgress progress = new IngestionProgress();
+    // база знаний была не пуста при старте загрузки
+    private volatile boolean hadContent;
+    // индексы в памяти построены
+    private volatile boolean indexesWarm;
+    // поставленные в очередь и выполняющиеся задачи
+    private int activeTasks;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        executor.execute(this::warmUpIndexes);
+        start();
+    }
+
+    private void warmUpIndexes() {
+        try {
+            lexicalIndexService.rebuild();
+            cooccurrenceIndexService.rebuild();
+        } catch (RuntimeException e) {
+            // без индексов поиск и расширение работают хуже, но работают: чат не блокируем
+            log.error("Failed to build in-memory search indexes", e);
+        }
+        indexesWarm = true;
+    }
+
+    @Override
+    public synchronized boolean start() {
+        final var loadService = fileContentLoadService.getIfAvailable();
+        if (loadService == null) {
+            state = IngestionState.DISABLED;
+            return false;
+        }
+        if (state == IngestionState.RUNNING) {
+            return false;
+        }
+        submit(loadService, FileContentLoadService::loadFilesContent);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean submitChanges(final List<Resource> resources,
+            final Collection<String> deletedFilenames) {
+        final var loadService = fileContentLoadService.getIfAvailable();
+        if (loadService == null) {
+            return false;
+        }
+        submit(loadService, (service, runProgress) -> service.loadFiles(resources, deletedFilenames, runProgress));
+        return true;
+    }
+
+    // задачи выполняются по очереди на одном потоке: полная и инкрементальные загрузки не пересекаются
+    private void submit(final FileContentLoadService loadService,
+            final BiConsumer<FileContentLoadService, IngestionProgress> task) {
+        hadContent = hadContent || loadedContentService.hasLoadedContent();
+        activeTasks++;
+        state = IngestionState.RUNNING;
+        executor.execute(() -> run(loadService, task));
+    }
+
+    private void run(final FileContentLoadService loadService,
+            final BiConsumer<FileContentLoadService, IngestionProgress> task) {
+        final var runProgress = new IngestionProgress();
+        progress = runProgress;
+        var failed = false;
+        try {
+            task.accept(loadService, runProgress);
+        } catch (RuntimeException e) {
+            log.error("Knowledge base ingestion failed", e);
+            failed = true;
+        }
+        synchronized (this) {
+            if (--activeTasks == 0) {
+                state = failed ? IngestionState.FAILED : IngestionState.COMPLETED;
+            }
+        }
+    }
+
+    @Override
+    public IngestionProgressModel getProgress() {
+        final var currentState = state;
+        return progress.toModel(currentState, isReady(currentState));
+    }
+
+    @Override
+    public boolean isKnowledgeBaseReady() {
+        return isReady(state);
+    }
+
+    // после неудачной загрузки отвечаем по тому, что успело загрузиться
+    private boolean isReady(final IngestionState currentState) {
+        return indexesWarm && (currentState != IngestionState.RUNNING || hadContent);
+    }
+
+    // прерывание доходит до обработчиков конвейера, недозаписанные файлы загрузятся при следующем старте
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
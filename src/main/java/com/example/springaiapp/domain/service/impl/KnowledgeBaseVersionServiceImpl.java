@@ -0,0 +1,64 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.springaiapp.domain.service.KnowledgeBaseVersionService;
+import com.example.springaiapp.infrastracture.entity.KnowledgeBaseVersionEntity;
+import com.example.springaiapp.infrastracture.repository.KnowledgeBaseVersionRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Реализация сервиса поколения базы знаний
+ * Поколение хранится в таблице knowledge_base_version (общее для реплик),
+ * в памяти держится последнее прочитанное значение, которое перечитывается не чаще refresh-interval
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KnowledgeBaseVersionServiceImpl implements KnowledgeBaseVersionService {
+    private static final long VERSION_ID = 1L;
+
+    private final KnowledgeBaseVersionRepository knowledgeBaseVersionRepository;
+
+    @Value("${app.knowledge-base.generation-refresh-interval}")
+    private Duration refreshInterval;
+    private volatile long generation = -1;
+    private volatile long refreshedAt;
+
+    @Override
+    public long getGeneration() {
+        if (generation < 0 || System.nanoTime() - refreshedAt > refreshInterval.toNanos()) {
+            refresh();
+        }
+        return generation;
+    }
+
+    @Override
+    @Transactional
+    public long increment() {
+        if (knowledgeBaseVersionRepository.increment(VERSION_ID) == 0) {
+            knowledgeBaseVersionRepository.save(KnowledgeBaseVersionEntity.builder()
+                    .id(VERSION_ID)
+                    .generation(1L)
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+        }
+        refresh();
+        log.info("Knowledge base generation: {}", generation);
+        return generation;
+    }
+
+    private void refresh() {
+        generation = knowledgeBaseVersionRepository.findById(VERSION_ID)
+                .map(KnowledgeBaseVersionEntity::getGeneration)
+                .orElse(0L);
+        refreshedAt = System.nanoTime();
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.springaiapp.domain.model.LexicalEngine;
+import com.example.springaiapp.domain.service.ChunkTermVectorService;
+import com.example.springaiapp.domain.service.LexicalIndexService;
+import com.example.springaiapp.domain.service.TextAnalysisService;
+import com.example.springaiapp.infrastracture.repository.VectorStoreRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory инвертированный индекс BM25 по всем чанкам базы знаний
+ * Хранит только postings, df и длины чанков - тексты дочитываются из vector_store
+ * по идентификаторам найденных чанков
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LexicalIndexServiceImpl implements LexicalIndexService {
+    // BM25 parameters
+    private static final double K = 1.2;
+    private static final double B = 0.75;
+
+    private final TextAnalysisService textAnalysisService;
+    private final ChunkTermVectorService chunkTermVectorService;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private IndexState state = new IndexState();
+
+    @Value("${app.chat.rag.lexical.enabled}")
+    private boolean lexicalEnabled;
+    @Value("${app.chat.rag.lexical.engine}")
+    private LexicalEngine lexicalEngine;
+    private boolean enabled;
+
+    // при поиске средствами PostgreSQL индекс в памяти не нужен
+    // индекс строится в фоне на потоке загрузки базы знаний (IngestionJobServiceImpl) до загрузки новых файлов,
+    // дальше поддерживается инкрементально; старт контекста перестроения не ждет
+    @PostConstruct
+    public void init() {
+        enabled = lexicalEnabled && lexicalEngine == LexicalEngine.MEMORY;
+    }
+
+    @Override
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        final var newState = new IndexState();
+        vectorStoreRepository.forEachChunk(it -> newState.add(it.getId(), analyze(it)));
+        lock.writeLock().lock();
+        try {
+            state = newState;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Lexical index rebuilt: {} chunks, {} terms", newState.documents.size(), newState.postings.size());
+    }
+
+    @Override
+    public void addDocuments(final List<Document> documents) {
+        if (!enabled || documents.isEmpty()) {
+            return;
+        }
+        // анализ текста выполняем до захвата блокировки, чтобы не блокировать поиск
+        final var analyzed = documents.stream()
+                .collect(Collectors.toMap(Document::getId, this::analyze, (a, b) -> b));
+        lock.writeLock().lock();
+        try {
+            analyzed.forEach(state::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeDocuments(final Collection<String> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            ids.forEach(state::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> search(final String query, final int topK) {
+        if (!enabled) {
+            return List.of();
+        }
+        final var queryTerms = new HashSet<>(textAnalysisService.tokenize(query));
+        final var scores = new HashMap<String, Double>();
+        lock.readLock().lock();
+        try {
+            final var totalDocs = state.documents.size();
+            if (totalDocs == 0) {
+                return List.of();
+            }
+            final var avgDocLength = (double) state.totalLength / totalDocs;
+            for (final var term : queryTerms) {
+                final var termPostings = state.postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                final var df = termPostings.size();
+                final var idf = Math.log(1 + (totalDocs - df + 0.5) / (df + 0.5));
+                termPostings.forEach((id, tf) -> {
+                    final var docLength = state.documents.get(id).length;
+                    final var numerator = tf * (K + 1);
+                    final var denominator = tf + K * (1 - B + B * docLength / avgDocLength);
+                    scores.merge(id, idf * (numerator / denominator), Double::sum);
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        final var topScores = scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(topK)
+                .toList();
+        final var documentsById = vectorStoreRepository
+                .findAllByIds(topScores.stream().map(Map.Entry::getKey).toList())
+                .stream()
+                .collect(Collectors.toMap(Document::getId, Function.identity()));
+        return topScores.stream()
+                .filter(it -> documentsById.containsKey(it.getKey()))
+                .map(it -> documentsById.get(it.getKey()).mutate().score(it.getValue()).build())
+                .sorted(Comparator.comparing(Document::getScore).reversed())
+                .toList();
+    }
+
+    // вектор терминов берется из metadata чанка, поэтому перестроение индекса не токенизирует тексты
+    private Map<String, Integer> analyze(final Document document) {
+        return chunkTermVectorService.analyze(document).getTermFrequencies();
+    }
+
+    // состояние индекса: term -> (id чанка -> tf) и статистики чанков
+    private static class IndexState {
+        final Map<String, Map<String, Integer>> postings = new HashMap<>();
+        final Map<String, DocumentEntry> documents = new HashMap<>();
+        long totalLength;
+
+        void add(final String id, final Map<String, Integer> termFrequencies) {
+            remove(id);
+            final var length = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+            termFrequencies.forEach((term, tf) -> postings
+                    .computeIfAbsent(term, it -> new HashMap<>())
+                    .put(id, tf));
+            documents.put(id, new DocumentEntry(length, termFrequencies.keySet()));
+            totalLength += length;
+        }
+
+        void remove(final String id) {
+            final var entry = documents.remove(id);
+            if (entry == null) {
+                return;
+            }
+            for (final var term : entry.terms) {
+                final var termPostings = postings.get(term);
+                termPostings.remove(id);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+            totalLength -= entry.length;
+        }
+    }
+
+    private static class DocumentEntry {
+        final int length;
+        final Set<String> terms;
+
+        DocumentEntry(final int length, final Set<String> terms) {
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+}
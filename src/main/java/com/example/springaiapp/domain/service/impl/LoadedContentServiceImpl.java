@@ -11,6 +11,7 @@ import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -49,14 +50,42 @@ public class LoadedContentServiceImpl implements LoadedContentService {
     
     @Override
     public List<LoadedContentModel> getLoadedContentByHashAndFilename(Set<Pair<String, String>> hashAndFileNames) {
-        final var filenamehashes =hashAndFileNames.stream()
-            .map(it -> it.getFirst() + "-" + it.getSecond())
-            .collect(Collectors.toSet());
-        return loadedContentRepository.findByFilenamehashes(filenamehashes)
+        if (hashAndFileNames.isEmpty()) {
+            return List.of();
+        }
+        final var filenames = hashAndFileNames.stream().map(Pair::getFirst).collect(Collectors.toSet());
+        final var hashes = hashAndFileNames.stream().map(Pair::getSecond).collect(Collectors.toSet());
+        return loadedContentRepository.findByHashInAndFilenameIn(hashes, filenames)
                 .stream()
+                .filter(it -> hashAndFileNames.contains(Pair.of(it.getFilename(), it.getHash())))
                 .map(loadedContentMapper::entityToModel)
                 .collect(Collectors.toList());
     }
+
+    @Override
+    @Transactional
+    public LoadedContentModel replaceLoadedContent(final LoadedContentModel loadedContent) {
+        final var removed = loadedContentRepository.deleteOtherVersions(
+                loadedContent.getFilename(), loadedContent.getHash());
+        log.info("Файл {} загружен, удалено предыдущих версий: {}", loadedContent.getFilename(), removed);
+        return loadedContentMapper.entityToModel(
+                loadedContentRepository.save(loadedContentMapper.modelToEntity(loadedContent)));
+    }
+
+    @Override
+    public Set<String> getLoadedFilenames() {
+        return loadedContentRepository.findAllFilenames();
+    }
+
+    @Override
+    @Transactional
+    public void deleteLoadedContentByFilenames(final Collection<String> filenames) {
+        if (filenames.isEmpty()) {
+            return;
+        }
+        final var removed = loadedContentRepository.deleteByFilenames(filenames);
+        log.info("Удалено записей загруженного контента: {} для файлов {}", removed, filenames);
+    }
     
     @Override
     @Transactional
@@ -81,4 +110,9 @@ public class LoadedContentServiceImpl implements LoadedContentService {
                 .map(loadedContentMapper::entityToModel);
     }
 
+    @Override
+    public boolean hasLoadedContent() {
+        return loadedContentRepository.count() > 0;
+    }
+
 }
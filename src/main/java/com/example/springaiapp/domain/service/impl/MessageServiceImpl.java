@@ -9,6 +9,7 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
@@ -19,10 +20,15 @@ import com.example.springaiapp.api.dto.AiMessageResponse;
 import com.example.springaiapp.api.dto.ResponeMessageDto;
 import com.example.springaiapp.api.dto.SendMessageRequest;
 import com.example.springaiapp.api.mapper.MessageMapper;
+import com.example.springaiapp.domain.memory.MessageRingBuffer;
+import com.example.springaiapp.domain.service.ChatSummaryService;
 import com.example.springaiapp.domain.service.MessageService;
+import com.example.springaiapp.domain.service.MessageWriteBehindService;
+import com.example.springaiapp.domain.utils.TransactionUtils;
 import com.example.springaiapp.infrastracture.entity.MessageEntity;
 import com.example.springaiapp.infrastracture.repository.ChatRepository;
 import com.example.springaiapp.infrastracture.repository.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
 
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
@@ -46,6 +52,10 @@ public class MessageServiceImpl implements MessageService {
     private final ChatClient chatClient;
     @Qualifier("postgresChatMemory")
     private final ChatMemory postgresChatMemory;
+    // окна памяти чатов: сообщения, записанные или удаленные здесь напрямую, сбрасывают окно чата
+    private final Cache<String, MessageRingBuffer> chatMemoryCache;
+    private final ChatSummaryService chatSummaryService;
+    private final MessageWriteBehindService messageWriteBehindService;
 
     /**
      * Получение сообщения по ID
@@ -108,10 +118,76 @@ public class MessageServiceImpl implements MessageService {
      */
     @Override
     public Optional<ResponeMessageDto> getLastMessageInChat(final Long chatId) {
-        final var messages = messageRepository.findLastMessageInChat(chatId);
+        final var messages = messageRepository.findNewestInChat(chatId, Limit.of(1));
         return messages.isEmpty() ? Optional.empty() : Optional.of(messageMapper.toDto(messages.get(0)));
     }
 
+    /**
+     * Последние сообщения чата
+     * 
+     * @param chatId идентификатор чата
+     * @param limit  количество сообщений
+     * @return сообщения от старых к новым
+     */
+    @Override
+    public List<ResponeMessageDto> getLatestMessages(final Long chatId, final int limit) {
+        return toChronologicalDtos(messageRepository.findNewestInChat(chatId, Limit.of(limit)));
+    }
+
+    /**
+     * Сообщения чата перед курсором (предыдущая страница истории)
+     * 
+     * @param chatId    идентификатор чата
+     * @param messageId идентификатор сообщения-курсора
+     * @param limit     количество сообщений
+     * @return сообщения от старых к новым
+     */
+    @Override
+    public List<ResponeMessageDto> getMessagesBefore(final Long chatId, final Long messageId, final int limit) {
+        final var cursor = findCursor(chatId, messageId);
+        return toChronologicalDtos(messageRepository.findOlderInChat(chatId, cursor.getCreatedAt(), cursor.getId(),
+                Limit.of(limit)));
+    }
+
+    /**
+     * Сообщения чата после курсора (следующая страница истории)
+     * 
+     * @param chatId    идентификатор чата
+     * @param messageId идентификатор сообщения-курсора
+     * @param limit     количество сообщений
+     * @return сообщения от старых к новым
+     */
+    @Override
+    public List<ResponeMessageDto> getMessagesAfter(final Long chatId, final Long messageId, final int limit) {
+        final var cursor = findCursor(chatId, messageId);
+        return messageRepository.findNewerInChat(chatId, cursor.getCreatedAt(), cursor.getId(), Limit.of(limit))
+                .stream()
+                .map(messageMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    private MessageEntity findCursor(final Long chatId, final Long messageId) {
+        return messageRepository.findById(messageId)
+                .filter(it -> it.getChatId().equals(chatId))
+                .orElseThrow(() -> new IllegalArgumentException("Сообщение не найдено"));
+    }
+
+    // выборка от новых к старым разворачивается в хронологический порядок
+    private List<ResponeMessageDto> toChronologicalDtos(final List<MessageEntity> newestFirst) {
+        return newestFirst.reversed().stream()
+                .map(messageMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    // с отложенной записью сообщение ставится в очередь, id назначается при записи
+    private MessageEntity persist(final MessageEntity message) {
+        if (messageWriteBehindService.isEnabled()) {
+            messageWriteBehindService.enqueue(List.of(message));
+            return message;
+        }
+        return messageRepository.save(message);
+    }
+
     /**
      * Получение сообщений, созданных после указанной даты в чате
      * 
@@ -145,7 +221,10 @@ public class MessageServiceImpl implements MessageService {
     @Override
     @Transactional
     public void deleteAllMessagesInChat(final Long chatId) {
+        messageWriteBehindService.discard(chatId);
         messageRepository.deleteByChatId(chatId);
+        chatSummaryService.delete(chatId);
+        TransactionUtils.afterCommit(() -> chatMemoryCache.invalidate(String.valueOf(chatId)));
     }
 
     /**
@@ -164,11 +243,12 @@ public class MessageServiceImpl implements MessageService {
 
         // Создаем сообщение пользователя
         final var userMessage = messageMapperService.createUserMessage(request);
-        messageRepository.save(userMessage);
+        persist(userMessage);
         final var assistantResponse = chatClient.prompt().user(request.getContent()).call().content();
         final var assistantMessage = messageMapperService.createAssistantMessage(request.getChatId(),
                 assistantResponse);
-        final var savedAiMessage = messageRepository.save(assistantMessage);
+        final var savedAiMessage = persist(assistantMessage);
+        TransactionUtils.afterCommit(() -> chatMemoryCache.invalidate(String.valueOf(request.getChatId())));
 
         return messageMapper.toDto(savedAiMessage);
     }
@@ -194,7 +274,9 @@ public class MessageServiceImpl implements MessageService {
     @Override
     @Transactional
     public MessageEntity saveMessage(final MessageEntity message) {
-        return messageRepository.save(message);
+        final var saved = persist(message);
+        TransactionUtils.afterCommit(() -> chatMemoryCache.invalidate(String.valueOf(message.getChatId())));
+        return saved;
     }
 
     /**
@@ -0,0 +1,269 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.springaiapp.domain.memory.MessageRingBuffer;
+import com.example.springaiapp.domain.service.MessageWriteBehindService;
+import com.example.springaiapp.infrastracture.entity.MessageEntity;
+import com.example.springaiapp.infrastracture.repository.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Реализация отложенной записи сообщений
+ * Поток записи забирает из очереди все накопившиеся сообщения (до batch-size) и сохраняет их
+ * в одной транзакции: при всплеске нагрузки один коммит приходится на пакет, а не на сообщение
+ * Временные ошибки бд повторяются с паузой, не меняя порядок; пакет с ошибкой данных
+ * (например, чат удален) пишется по одному сообщению, не записанные сообщения отбрасываются
+ * При любой другой ошибке пакет убирается из pending, окна его чатов перечитываются из бд
+ * Записанные сообщения переносятся в окно памяти чата в кэше и убираются из pending
+ * При остановке приложения очередь дописывается (не дольше shutdown-timeout)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessageWriteBehindServiceImpl implements MessageWriteBehindService {
+    private static final Duration RETRY_DELAY = Duration.ofMillis(100);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final MessageRepository messageRepository;
+    private final MessageMapperService messageMapperService;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, MessageRingBuffer> chatMemoryCache;
+    private final MeterRegistry meterRegistry;
+    // незаписанные сообщения по чатам, списки неизменяемые и заменяются целиком
+    private final Map<Long, List<PendingMessage>> pending = new ConcurrentHashMap<>();
+
+    @Value("${app.chat.write-behind.enabled}")
+    private boolean enabled;
+    @Value("${app.chat.write-behind.queue-capacity}")
+    private int queueCapacity;
+    @Value("${app.chat.write-behind.batch-size}")
+    private int batchSize;
+    @Value("${app.chat.write-behind.shutdown-timeout}")
+    private Duration shutdownTimeout;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    /**
+     * Сообщение в очереди записи
+     * id выставляется внутри транзакции записи, до коммита, поэтому читатель, увидевший
+     * сообщение в бд, увидит и id в pending и не продублирует его
+     */
+    private static final class PendingMessage {
+        private final MessageEntity entity;
+        private final Message message;
+        private volatile long id;
+        private volatile boolean discarded;
+
+        private PendingMessage(final MessageEntity entity, final Message message) {
+            this.entity = entity;
+            this.message = message;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        meterRegistry.gaugeCollectionSize("chat.message.write-behind.queue", Tags.empty(), queue);
+        running = true;
+        writer = Thread.ofPlatform().name("message-writer").start(this::writeLoop);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void enqueue(final List<MessageEntity> messages) {
+        final var items = messages.stream()
+                .map(it -> new PendingMessage(it, messageMapperService.toMessage(it)))
+                .toList();
+        if (!running) {
+            // приложение останавливается: поток записи уже не заберет сообщения
+            transactionTemplate.executeWithoutResult(status -> messageRepository.saveAll(messages));
+            return;
+        }
+        // сначала pending, потом очередь: записанное сообщение всегда есть либо в pending, либо в бд
+        items.forEach(it -> pending.merge(it.entity.getChatId(), List.of(it),
+                (current, added) -> Stream.concat(current.stream(), added.stream()).toList()));
+        try {
+            for (final var item : items) {
+                queue.put(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the message write queue", e);
+        }
+    }
+
+    @Override
+    public List<Message> pending(final Long chatId, final Set<Long> windowIds) {
+        return pending.getOrDefault(chatId, List.of()).stream()
+                .filter(it -> !it.discarded && (it.id == 0 || !windowIds.contains(it.id)))
+                .map(it -> it.message)
+                .toList();
+    }
+
+    @Override
+    public void discard(final Long chatId) {
+        final var removed = pending.remove(chatId);
+        if (removed != null) {
+            removed.forEach(it -> it.discarded = true);
+        }
+    }
+
+    private void writeLoop() {
+        final var batch = new ArrayList<PendingMessage>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                final var first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                batch.removeIf(it -> it.discarded);
+                if (!batch.isEmpty()) {
+                    write(batch);
+                    publish(batch);
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Failed to write {} chat messages", batch.size(), e);
+                drop(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(final List<PendingMessage> batch) throws InterruptedException {
+        var delay = RETRY_DELAY;
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> save(batch));
+                return;
+            } catch (TransientDataAccessException | DataAccessResourceFailureException
+                    | TransactionException e) {
+                reset(batch);
+                log.warn("Chat messages write failed, retrying in {} ms: {}", delay.toMillis(), e.getMessage());
+                Thread.sleep(delay.toMillis());
+                delay = delay.multipliedBy(2).compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay.multipliedBy(2);
+            } catch (DataAccessException e) {
+                reset(batch);
+                log.warn("Chat messages batch rejected, writing one by one: {}", e.getMessage());
+                writeOneByOne(batch);
+                return;
+            }
+        }
+    }
+
+    private void writeOneByOne(final List<PendingMessage> batch) {
+        for (final var item : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> save(List.of(item)));
+            } catch (DataAccessException e) {
+                reset(List.of(item));
+                item.discarded = true;
+                log.warn("Chat message for chat {} dropped: {}", item.entity.getChatId(), e.getMessage());
+            }
+        }
+    }
+
+    private void save(final List<PendingMessage> batch) {
+        messageRepository.saveAll(batch.stream().map(it -> it.entity).toList());
+        batch.forEach(it -> it.id = it.entity.getId());
+    }
+
+    // после отката транзакции сущности снова новые
+    private void reset(final Collection<PendingMessage> batch) {
+        batch.forEach(it -> {
+            it.entity.setId(null);
+            it.id = 0;
+        });
+    }
+
+    private void publish(final List<PendingMessage> batch) {
+        final var byChat = new LinkedHashMap<Long, List<PendingMessage>>();
+        batch.forEach(it -> byChat.computeIfAbsent(it.entity.getChatId(), key -> new ArrayList<>()).add(it));
+        byChat.forEach((chatId, written) -> {
+            // окно обновляется до удаления из pending: читатель не теряет сообщение между ними
+            chatMemoryCache.asMap().computeIfPresent(String.valueOf(chatId), (key, buffer) -> {
+                written.stream()
+                        .filter(it -> !it.discarded)
+                        .forEach(it -> buffer.add(it.id, it.message));
+                return buffer;
+            });
+            pending.computeIfPresent(chatId, (key, current) -> {
+                final var remaining = current.stream().filter(it -> !written.contains(it)).toList();
+                return remaining.isEmpty() ? null : remaining;
+            });
+        });
+    }
+
+    // непредвиденная ошибка: состояние пакета неизвестно, сообщения убираются из pending,
+    // а окна чатов перечитываются из бд - в них попадет то, что успело записаться
+    private void drop(final List<PendingMessage> batch) {
+        final var chatIds = new LinkedHashMap<Long, List<PendingMessage>>();
+        batch.forEach(it -> {
+            it.discarded = true;
+            chatIds.computeIfAbsent(it.entity.getChatId(), key -> new ArrayList<>()).add(it);
+        });
+        chatIds.forEach((chatId, dropped) -> {
+            pending.computeIfPresent(chatId, (key, current) -> {
+                final var remaining = current.stream().filter(it -> !dropped.contains(it)).toList();
+                return remaining.isEmpty() ? null : remaining;
+            });
+            chatMemoryCache.invalidate(String.valueOf(chatId));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(shutdownTimeout.toMillis());
+        if (writer.isAlive()) {
+            log.error("Chat message writer did not finish in {}, {} messages are not written",
+                    shutdownTimeout, queue.size());
+            writer.interrupt();
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package com.example.springaiapp.domain.service.impl;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.data.domain.Limit;
 import org.springframework.lang.NonNull;
 
+import com.example.springaiapp.domain.memory.MessageRingBuffer;
+import com.example.springaiapp.domain.model.ChatMemoryMode;
+import com.example.springaiapp.domain.model.ChatSummaryModel;
+import com.example.springaiapp.domain.service.ChatSummaryService;
+import com.example.springaiapp.domain.service.MessageWriteBehindService;
+import com.example.springaiapp.domain.utils.TokenEstimator;
+import com.example.springaiapp.domain.utils.TransactionUtils;
+import com.example.springaiapp.infrastracture.entity.MessageEntity;
 import com.example.springaiapp.infrastracture.repository.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
 
 import jakarta.transaction.Transactional;
 import lombok.Builder;
@@ -17,42 +31,159 @@ import lombok.extern.slf4j.Slf4j;
 // между тем, сколько сообщений хранить в памяти модели и сколько в базе данных
 // т.е. если мы хотим хранить 2 сообщения в контексте модели, то в бд должно быть 2 сообщения
 // а здесь мы можем просто селектнуть последние maxMessages сообщения из бд
+// окно последних maxMessages сообщений держится в кэше (кольцевой буфер на чат): add пишет в бд и в буфер,
+// get отдает буфер, бд читается только при промахе (новый или вытесненный чат)
+// код, который пишет или удаляет сообщения чата мимо этого класса, должен сбросить запись кэша
+// в режиме TOKENS из буфера берутся последние сообщения в пределах tokenBudget (max-messages - верхняя граница),
+// не вошедшие в бюджет сжимаются в фоне в краткое содержание, которое идет первым сообщением окна:
+// длина промпта, а с ней и время prefill до первого токена, не растет с длиной сообщений
+// с отложенной записью (messageWriteBehindService) add только ставит сообщения в очередь,
+// окно дополняется еще не записанными сообщениями чата
 @Slf4j
 @Builder
 public class PostgresChatMemoryService implements ChatMemory {
+    // отметка сообщения с кратким содержанием: по ней advisor'ы отличают продолжение диалога от первого вопроса
+    public static final String SUMMARY_METADATA_KEY = "chat_summary";
+    private static final String SUMMARY_PREFIX = "Краткое содержание предыдущей части разговора:\n";
+
     private final long maxMessages;
+    private final ChatMemoryMode mode;
+    private final int tokenBudget;
+    // сжатие запускается, когда из окна вытеснено не меньше summaryMinMessages несжатых сообщений
+    private final int summaryMinMessages;
+    // null - вытесненные сообщения не сжимаются
+    private final ChatSummaryService chatSummaryService;
+    // null - сообщения пишутся в бд синхронно
+    private final MessageWriteBehindService messageWriteBehindService;
     private final MessageRepository messageRepository;
     private final MessageMapperService messageMapperService;
+    private final Cache<String, MessageRingBuffer> cache;
 
     @Override
     @Transactional
     public void add(String conversationId, List<Message> messages) {
-        messageRepository.saveAll(messages.stream()
+        final var entities = messages.stream()
                 .map(it -> messageMapperService.toEntity(it, Long.parseLong(conversationId)))
-                .collect(Collectors.toList()));
+                .collect(Collectors.toList());
+        if (messageWriteBehindService != null) {
+            // окно в кэше обновит поток записи
+            messageWriteBehindService.enqueue(entities);
+            return;
+        }
+        final var saved = messageRepository.saveAll(entities);
+        // буфер обновляется, только если чат уже в кэше: иначе следующий get загрузит окно из бд
+        // computeIfPresent дожидается загрузки буфера, начатой параллельным get
+        // после фиксации внешней транзакции: при откате в окне не остаются незаписанные сообщения
+        TransactionUtils.afterCommit(() -> cache.asMap().computeIfPresent(conversationId, (key, buffer) -> {
+            saved.forEach(it -> buffer.add(it.getId(), messageMapperService.toMessage(it)));
+            return buffer;
+        }));
     }
 
     @Override
     @NonNull
     public List<Message> get(String conversationId) {
-        // берем последние maxMessages сообщений из бд
-        // отсортированных по дате создания
-        // начиная со старых сообщений и заканчивая новыми
-        // нужно для того, чтобы в модель передавался правильный порядок сообщений
+        final var buffer = cache.get(conversationId, this::load);
+        if (mode != ChatMemoryMode.TOKENS && messageWriteBehindService == null) {
+            return buffer.toList();
+        }
+        final var entries = buffer.entries();
+        final List<Message> pending = messageWriteBehindService == null ? List.of()
+                : messageWriteBehindService.pending(Long.parseLong(conversationId),
+                        entries.stream().map(MessageRingBuffer.Entry::id).collect(Collectors.toSet()));
+        if (mode == ChatMemoryMode.TOKENS) {
+            return tokenWindow(conversationId, buffer.getSummary(), buffer.getLastEvictedId(), entries, pending);
+        }
+        final var window = new ArrayList<Message>(entries.size() + pending.size());
+        entries.forEach(it -> window.add(it.message()));
+        window.addAll(pending);
+        return window.size() > maxMessages
+                ? window.subList(window.size() - (int) maxMessages, window.size())
+                : window;
+    }
+
+    // pending - еще не записанные сообщения, они новее окна и передаются всегда
+    // lastEvictedId - последнее сообщение, вытесненное из буфера (0 - более старых сообщений нет)
+    private List<Message> tokenWindow(String conversationId, ChatSummaryModel summary, long lastEvictedId,
+            List<MessageRingBuffer.Entry> entries, List<Message> pending) {
+        // сообщения окна до последнего сжатого включительно (если оно еще в окне) уже в кратком содержании
+        var summarizedIndex = -1;
+        for (var i = 0; summary != null && i < entries.size(); i++) {
+            if (entries.get(i).id() == summary.getLastMessageId()) {
+                summarizedIndex = i;
+            }
+        }
+        var budget = tokenBudget - (summary == null ? 0
+                : TokenEstimator.estimate(summary.getContent()) + TokenEstimator.MESSAGE_OVERHEAD);
+        for (final var message : pending) {
+            budget -= TokenEstimator.estimate(message.getText()) + TokenEstimator.MESSAGE_OVERHEAD;
+        }
+        // окно набирается от новых сообщений к старым до исчерпания бюджета или до сжатых сообщений
+        var from = entries.size();
+        while (from - 1 > summarizedIndex) {
+            final var tokens = TokenEstimator.estimate(entries.get(from - 1).message().getText())
+                    + TokenEstimator.MESSAGE_OVERHEAD;
+            // самое новое сообщение передается, даже если оно больше бюджета
+            if (tokens > budget && (from < entries.size() || !pending.isEmpty())) {
+                break;
+            }
+            budget -= tokens;
+            from--;
+        }
+        // вытесненные бюджетом, но еще не сжатые сообщения буфера
+        final var evicted = from - (summarizedIndex + 1);
+        // краткое содержание не доходит до начала буфера: между ними сообщения, которые вытеснены
+        // из буфера раньше, чем были сжаты; они есть только в бд и сжимаются независимо от порога
+        final var gap = summarizedIndex < 0 && lastEvictedId != 0
+                && (summary == null || summary.getLastMessageId() != lastEvictedId);
+        if (chatSummaryService != null && (gap || evicted >= Math.max(1, summaryMinMessages))) {
+            chatSummaryService.compactAsync(Long.parseLong(conversationId), summary,
+                    evicted > 0 ? entries.get(from - 1).id() : lastEvictedId);
+        }
+
+        final var window = new ArrayList<Message>(entries.size() - from + pending.size() + 1);
+        if (summary != null) {
+            window.add(SystemMessage.builder()
+                    .text(SUMMARY_PREFIX + summary.getContent())
+                    .metadata(Map.of(SUMMARY_METADATA_KEY, true))
+                    .build());
+        }
+        entries.subList(from, entries.size()).forEach(it -> window.add(it.message()));
+        window.addAll(pending);
+        return window;
+    }
+
+    private MessageRingBuffer load(String conversationId) {
+        // берем последние maxMessages сообщений из бд одним запросом ORDER BY created_at DESC LIMIT
+        // по индексу (chat_id, created_at DESC, id DESC), без подсчета и OFFSET
+        // в модель сообщения передаются начиная со старых и заканчивая новыми,
+        // поэтому выборку разворачиваем
         // пример, если мы просим каждый раз отдавать нам число на 1 больше чем мы отдали,
         // у модели будет история 1, 2, 3, 4, 5, 6, 7, 8, 9, 10
-        // если мы будем просто сортировать по desc, то модели будет история 10, 9, 8, 7, 6, 5, 4, 3, 2, 1 (в обратном порядке)
-        final var count = messageRepository.countByChatId(Long.parseLong(conversationId));
-        return messageRepository
-                .findNewestMessagesInChatTopN(Long.parseLong(conversationId),
-                        count > maxMessages ? count - maxMessages : 0)
+        // если не развернуть, то модели будет история 10, 9, 8, 7, 6, 5, 4, 3, 2, 1 (в обратном порядке)
+        final var buffer = new MessageRingBuffer((int) maxMessages);
+        if (mode == ChatMemoryMode.TOKENS && chatSummaryService != null) {
+            chatSummaryService.find(Long.parseLong(conversationId)).ifPresent(buffer::setSummary);
+        }
+        // на одно сообщение больше емкости: оно сразу вытесняется и отмечается в буфере как последнее
+        // вытесненное, так окно в режиме TOKENS знает, что до буфера есть сообщения только из бд
+        messageRepository.findNewestInChat(Long.parseLong(conversationId), Limit.of((int) maxMessages + 1))
                 .stream()
-                .map(it -> messageMapperService.toMessage(it))
-                .collect(Collectors.toList());
+                // разворот; при совпадающем created_at порядок по id (в пределах экземпляра id растут)
+                .sorted(Comparator.comparing(MessageEntity::getCreatedAt).thenComparing(MessageEntity::getId))
+                .forEach(it -> buffer.add(it.getId(), messageMapperService.toMessage(it)));
+        return buffer;
     }
 
     @Override
     public void clear(String conversationId) {
+        if (messageWriteBehindService != null) {
+            messageWriteBehindService.discard(Long.parseLong(conversationId));
+        }
         messageRepository.deleteByChatId(Long.parseLong(conversationId));
+        if (chatSummaryService != null) {
+            chatSummaryService.delete(Long.parseLong(conversationId));
+        }
+        TransactionUtils.afterCommit(() -> cache.invalidate(conversationId));
     }
 }
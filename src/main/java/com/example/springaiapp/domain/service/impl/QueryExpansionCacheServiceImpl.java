@@ -0,0 +1,90 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.springaiapp.domain.service.QueryExpansionCacheService;
+import com.example.springaiapp.domain.utils.HashUtils;
+import com.example.springaiapp.infrastracture.entity.QueryExpansionCacheEntity;
+import com.example.springaiapp.infrastracture.repository.QueryExpansionCacheRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Реализация двухуровневого кэша расширений запросов
+ * L1 - ограниченный LRU/TTL кэш в памяти, L2 (опционально) - таблица query_expansion_cache,
+ * переживает рестарт и общая для всех реплик
+ * Строки L2 старше ttl периодически удаляются
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryExpansionCacheServiceImpl implements QueryExpansionCacheService {
+    private static final String L2_METRIC = "query.expansion.cache.l2";
+
+    private final Cache<String, String> queryExpansionCache;
+    private final QueryExpansionCacheRepository queryExpansionCacheRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.chat.rag.expansion.cache.persistent}")
+    private boolean persistent;
+    @Value("${app.chat.rag.expansion.cache.ttl}")
+    private Duration ttl;
+
+    @Override
+    public Optional<String> get(final String query, final String model) {
+        final var normalizedQuery = normalize(query);
+        final var key = model + ":" + normalizedQuery;
+        final var cached = queryExpansionCache.getIfPresent(key);
+        if (cached != null || !persistent) {
+            return Optional.ofNullable(cached);
+        }
+
+        final var persisted = queryExpansionCacheRepository
+                .findFirstByQueryHashAndModelAndCreatedAtAfterOrderByCreatedAtDesc(
+                        HashUtils.sha256Hex(normalizedQuery), model, LocalDateTime.now().minus(ttl))
+                .map(QueryExpansionCacheEntity::getExpansion);
+        meterRegistry.counter(L2_METRIC, "result", persisted.isPresent() ? "hit" : "miss").increment();
+        persisted.ifPresent(it -> queryExpansionCache.put(key, it));
+        return persisted;
+    }
+
+    @Override
+    @Transactional
+    public void put(final String query, final String model, final String expansion) {
+        final var normalizedQuery = normalize(query);
+        queryExpansionCache.put(model + ":" + normalizedQuery, expansion);
+        if (persistent) {
+            queryExpansionCacheRepository.upsert(HashUtils.sha256Hex(normalizedQuery), model, normalizedQuery, expansion);
+        }
+    }
+
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${app.chat.rag.expansion.cache.cleanup-interval}",
+            initialDelayString = "${app.chat.rag.expansion.cache.cleanup-interval}")
+    public void evictStale() {
+        if (!persistent) {
+            return;
+        }
+        final var deleted = queryExpansionCacheRepository.deleteByCreatedAtBefore(LocalDateTime.now().minus(ttl));
+        if (deleted > 0) {
+            log.info("Query expansion cache: {} stale expansions deleted", deleted);
+        }
+    }
+
+    // регистр и пробелы не влияют на результат расширения
+    private String normalize(final String query) {
+        return query.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
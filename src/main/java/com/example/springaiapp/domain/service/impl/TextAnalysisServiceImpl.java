@@ -0,0 +1,93 @@
+package com.example.springaiapp.domain.service.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.springframework.stereotype.Service;
+
+import com.example.springaiapp.domain.service.TextAnalysisService;
+import com.github.pemistahl.lingua.api.Language;
+import com.github.pemistahl.lingua.api.LanguageDetector;
+import com.github.pemistahl.lingua.api.LanguageDetectorBuilder;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Реализация сервиса лексического анализа текста
+ * Анализаторы создаются один раз: lucene Analyzer потокобезопасен,
+ * TokenStreamComponents переиспользуются в рамках потока
+ */
+@Service
+public class TextAnalysisServiceImpl implements TextAnalysisService {
+    private final LanguageDetector languageDetector = LanguageDetectorBuilder
+            .fromLanguages(Language.ENGLISH, Language.RUSSIAN)
+            .build();
+    private final Analyzer englishAnalyzer = new EnglishAnalyzer();
+    private final Analyzer russianAnalyzer = new RussianAnalyzer();
+
+    @Override
+    public Language detectLanguage(final String text) {
+        final var language = languageDetector.detectLanguageOf(text);
+        // для неподдерживаемых языков используем английский анализатор
+        return language == Language.RUSSIAN ? Language.RUSSIAN : Language.ENGLISH;
+    }
+
+    @Override
+    public List<String> tokenize(final String text) {
+        return tokenize(text, detectLanguage(text));
+    }
+
+    @Override
+    public List<String> tokenize(final String text, final Language language) {
+        final var tokens = new ArrayList<String>();
+        final var analyzer = language == Language.RUSSIAN ? russianAnalyzer : englishAnalyzer;
+        try (final var stream = analyzer.tokenStream(null, text)) {
+            final var termAttribute = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(termAttribute.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Tokenization failed", e);
+        }
+        return tokens;
+    }
+
+    @Override
+    public Map<String, String> surfaceForms(final String text, final Language language) {
+        final var forms = new LinkedHashMap<String, String>();
+        final var analyzer = language == Language.RUSSIAN ? russianAnalyzer : englishAnalyzer;
+        try (final var stream = analyzer.tokenStream(null, text)) {
+            final var termAttribute = stream.addAttribute(CharTermAttribute.class);
+            // смещения указывают на исходное слово в тексте до стемминга
+            final var offsetAttribute = stream.addAttribute(OffsetAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                forms.putIfAbsent(termAttribute.toString(), text
+                        .substring(offsetAttribute.startOffset(), offsetAttribute.endOffset())
+                        .toLowerCase(Locale.ROOT));
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Tokenization failed", e);
+        }
+        return forms;
+    }
+
+    @PreDestroy
+    public void close() {
+        englishAnalyzer.close();
+        russianAnalyzer.close();
+    }
+}
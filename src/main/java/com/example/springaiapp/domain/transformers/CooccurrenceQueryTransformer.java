@@ -0,0 +1,31 @@
+package com.example.springaiapp.domain.transformers;
+
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.lang.NonNull;
+
+import com.example.springaiapp.domain.service.CooccurrenceIndexService;
+
+import lombok.Builder;
+
+/**
+ * Расширение запроса без обращения к модели: в конец запроса через запятую дописываются термины,
+ * чаще всего встречающиеся в базе знаний вместе с терминами запроса
+ * Формат совпадает с ExpansionQueryTransformer, поэтому движки взаимозаменяемы
+ */
+@Builder
+public class CooccurrenceQueryTransformer implements QueryTransformer {
+
+    private final CooccurrenceIndexService cooccurrenceIndexService;
+    @Builder.Default
+    private final int maxTerms = 5;
+
+    @Override
+    public @NonNull Query transform(@NonNull Query query) {
+        final var terms = cooccurrenceIndexService.expand(query.text(), maxTerms);
+        if (terms.isEmpty()) {
+            return query;
+        }
+        return query.mutate().text(query.text() + ", " + String.join(", ", terms)).build();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.springaiapp.domain.transformers;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.expansion.QueryExpander;
+import org.springframework.lang.NonNull;
+
+import lombok.Builder;
+
+/**
+ * Удаление повторяющихся запросов из результата другого QueryExpander
+ * Модель может вернуть переформулировку, совпадающую с исходным запросом или с другой переформулировкой:
+ * RetrievalAugmentationAdvisor собирает результаты поиска в Map по запросу и падает на дубле ключа,
+ * а повторный поиск по тому же тексту ничего не добавляет
+ * Запросы сравниваются по тексту без учета регистра и пробелов по краям, остается первый
+ */
+@Builder
+public class DistinctQueryExpander implements QueryExpander {
+
+    private final QueryExpander queryExpander;
+
+    @Override
+    @NonNull
+    public List<Query> expand(@NonNull Query query) {
+        final var distinct = new LinkedHashMap<String, Query>();
+        for (final var expanded : queryExpander.expand(query)) {
+            distinct.putIfAbsent(expanded.text().strip().toLowerCase(Locale.ROOT), expanded);
+        }
+        return List.copyOf(distinct.values());
+    }
+}
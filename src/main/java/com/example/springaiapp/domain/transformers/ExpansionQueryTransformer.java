@@ -12,6 +12,8 @@ import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransfo
 import org.springframework.lang.NonNull;
 import org.springframework.util.StringUtils;
 
+import com.example.springaiapp.domain.service.QueryExpansionCacheService;
+
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 
@@ -50,6 +52,10 @@ public class ExpansionQueryTransformer implements QueryTransformer {
                         .build();
 
         private final ChatClient chatClient;
+        // опциональный кэш результатов: расширение детерминировано, повторные вопросы
+        // не должны каждый раз ходить в модель
+        private final QueryExpansionCacheService queryExpansionCacheService;
+        private final String model;
 
         public static ExpansionQueryTransformerBuilder builder(ChatModel chatModel) {
                 return new ExpansionQueryTransformerBuilder()
@@ -69,7 +75,14 @@ public class ExpansionQueryTransformer implements QueryTransformer {
 
         @Override
         public @NonNull Query transform(@NonNull Query query) {
-                var transformedQueryText = this.chatClient.prompt()
+                if (queryExpansionCacheService != null) {
+                        final var cached = queryExpansionCacheService.get(query.text(), model);
+                        if (cached.isPresent()) {
+                                return query.mutate().text(cached.get()).build();
+                        }
+                }
+
+                final var transformedQueryText = this.chatClient.prompt()
                                 .user(TEMPLATE.render(Map.of("query", query.text())))
                                 .call()
                                 .content();
@@ -77,6 +90,9 @@ public class ExpansionQueryTransformer implements QueryTransformer {
                 if (!StringUtils.hasText(transformedQueryText)) {
                         return query;
                 }
+                if (queryExpansionCacheService != null) {
+                        queryExpansionCacheService.put(query.text(), model, transformedQueryText);
+                }
 
                 return query.mutate().text(transformedQueryText).build();
         }
@@ -0,0 +1,53 @@
+package com.example.springaiapp.domain.utils;
+
+/**
+ * Быстрая локальная оценка количества токенов текста без токенизатора модели
+ * Слово латиницей - около 4 символов на токен, кириллицей и остальными алфавитами - около 3
+ * (BPE словари хуже покрывают не английский текст), знак препинания - отдельный токен
+ * Оценка с запасом, для бюджета окна памяти, а не для точного подсчета
+ */
+public final class TokenEstimator {
+    // служебные токены роли и разделителей сообщения в шаблоне чата
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * Оценка количества токенов текста
+     *
+     * @param text текст
+     * @return оценка количества токенов
+     */
+    public static int estimate(final String text) {
+        if (text == null) {
+            return 0;
+        }
+        var tokens = 0;
+        var wordLength = 0;
+        var asciiWord = true;
+        for (var i = 0; i < text.length(); i++) {
+            final var c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                wordLength++;
+                asciiWord &= c < 128;
+                continue;
+            }
+            tokens += wordTokens(wordLength, asciiWord);
+            wordLength = 0;
+            asciiWord = true;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + wordTokens(wordLength, asciiWord);
+    }
+
+    private static int wordTokens(final int length, final boolean ascii) {
+        if (length == 0) {
+            return 0;
+        }
+        final var charsPerToken = ascii ? 4 : 3;
+        return (length + charsPerToken - 1) / charsPerToken;
+    }
+}
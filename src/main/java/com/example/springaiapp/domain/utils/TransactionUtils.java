@@ -0,0 +1,34 @@
+package com.example.springaiapp.domain.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Действия, привязанные к завершению текущей транзакции
+ */
+public final class TransactionUtils {
+
+    private TransactionUtils() {
+    }
+
+    /**
+     * Выполнение действия после фиксации текущей транзакции
+     * Кэш, обновленный до фиксации, успевает загрузить из бд старое состояние параллельным чтением
+     * или остаться с данными откаченной транзакции
+     * Без активной транзакции действие выполняется сразу
+     *
+     * @param action действие
+     */
+    public static void afterCommit(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
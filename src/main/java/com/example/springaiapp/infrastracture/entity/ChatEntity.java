@@ -21,7 +21,9 @@ import java.util.List;
 public class ChatEntity {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // пул id из последовательности (шаг 50, см. 012-pooled-id-sequences.xml): INSERT'ы идут JDBC batch
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chats_id_seq")
+    @SequenceGenerator(name = "chats_id_seq", sequenceName = "chats_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "title", nullable = false, length = 255)
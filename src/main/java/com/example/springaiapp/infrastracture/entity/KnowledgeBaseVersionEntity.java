@@ -0,0 +1,31 @@
+package com.example.springaiapp.infrastracture.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity для таблицы knowledge_base_version
+ * Единственная строка с номером поколения базы знаний, увеличивается при каждой загрузке контента
+ */
+@Entity
+@Table(name = "knowledge_base_version")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KnowledgeBaseVersionEntity {
+
+    @Id
+    private Long id;
+
+    @Column(name = "generation", nullable = false)
+    private Long generation;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
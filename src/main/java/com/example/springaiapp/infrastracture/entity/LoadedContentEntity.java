@@ -21,7 +21,9 @@ import java.time.LocalDateTime;
 public class LoadedContentEntity {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // пул id из последовательности (шаг 50, см. 012-pooled-id-sequences.xml): INSERT'ы идут JDBC batch
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loaded_content_id_seq")
+    @SequenceGenerator(name = "loaded_content_id_seq", sequenceName = "loaded_content_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "filename", nullable = false, length = 255)
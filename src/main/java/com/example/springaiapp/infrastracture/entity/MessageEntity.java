@@ -15,6 +15,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -32,7 +33,9 @@ import lombok.NoArgsConstructor;
 public class MessageEntity {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // пул id из последовательности (шаг 50, см. 012-pooled-id-sequences.xml): INSERT'ы идут JDBC batch
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_id_seq")
+    @SequenceGenerator(name = "message_id_seq", sequenceName = "message_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "chat_id", nullable = false)
@@ -0,0 +1,41 @@
+package com.example.springaiapp.infrastracture.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity для таблицы query_expansion_cache
+ * Второй уровень кэша расширений запросов, общий для всех реплик
+ */
+@Entity
+@Table(name = "query_expansion_cache")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QueryExpansionCacheEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "query_hash", nullable = false, length = 64)
+    private String queryHash;
+
+    @Column(name = "model", nullable = false, length = 255)
+    private String model;
+
+    @Column(name = "query", nullable = false, columnDefinition = "TEXT")
+    private String query;
+
+    @Column(name = "expansion", nullable = false, columnDefinition = "TEXT")
+    private String expansion;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
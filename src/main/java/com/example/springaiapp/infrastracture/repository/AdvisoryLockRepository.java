@@ -0,0 +1,113 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Advisory locks PostgreSQL для координации реплик
+ * Блокировки уровня сессии держатся на выделенном соединении (вне транзакций приложения):
+ * закрытие сессии или падение реплики снимает их все
+ * Ключ блокировки - hashtextextended от строки
+ */
+@Repository
+@RequiredArgsConstructor
+public class AdvisoryLockRepository {
+    private final DataSource dataSource;
+
+    /**
+     * Открытие сессии блокировок, соединение занято до close()
+     *
+     * @return сессия блокировок
+     */
+    public AdvisoryLockSession openSession() {
+        try {
+            return new AdvisoryLockSession(dataSource.getConnection());
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Failed to open advisory lock session", e);
+        }
+    }
+
+    /**
+     * Сессия блокировок, потокобезопасна: запросы на соединении выполняются по очереди
+     * Очередь - ReentrantLock, а не synchronized: вызывающие стадии работают на виртуальных потоках,
+     * монитор на время запроса к бд закреплял бы поток-носитель (JDK 21)
+     */
+    public static final class AdvisoryLockSession implements AutoCloseable {
+        private final Connection connection;
+        private final JdbcTemplate jdbcTemplate;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private AdvisoryLockSession(final Connection connection) {
+            this.connection = connection;
+            this.jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        }
+
+        /**
+         * Захват блокировки без ожидания
+         *
+         * @param key ключ
+         * @return false если блокировка принадлежит другой сессии
+         */
+        public boolean tryLock(final String key) {
+            lock.lock();
+            try {
+                return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                        "SELECT pg_try_advisory_lock(hashtextextended(?, 0))", Boolean.class, key));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Освобождение блокировки этой сессии
+         *
+         * @param key ключ
+         */
+        public void unlock(final String key) {
+            lock.lock();
+            try {
+                jdbcTemplate.queryForObject("SELECT pg_advisory_unlock(hashtextextended(?, 0))", Boolean.class, key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Освобождение всех блокировок этой сессии
+         */
+        public void unlockAll() {
+            lock.lock();
+            try {
+                jdbcTemplate.execute("SELECT pg_advisory_unlock_all()");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                unlockAll();
+            } finally {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    throw new DataAccessResourceFailureException("Failed to close advisory lock session", e);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Репозиторий семантического кэша ответов (таблица answer_cache, HNSW индекс по эмбеддингу вопроса)
+ */
+@Repository
+@RequiredArgsConstructor
+public class AnswerCacheRepository {
+
+    /**
+     * Ближайший по косинусному расстоянию вопрос
+     *
+     * @param answer     сохраненный ответ
+     * @param similarity косинусная близость вопросов
+     */
+    public record AnswerCacheHit(String answer, double similarity) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Поиск ответа на ближайший вопрос того же поколения базы знаний и той же модели
+     *
+     * @param questionEmbedding эмбеддинг вопроса
+     * @param model             chat модель
+     * @param generation        поколение базы знаний
+     * @return ближайший сохраненный ответ
+     */
+    public Optional<AnswerCacheHit> findNearest(final float[] questionEmbedding, final String model,
+            final long generation) {
+        return jdbcTemplate.query("""
+                SELECT answer, 1 - (question_embedding <=> CAST(:embedding AS vector)) AS similarity
+                FROM answer_cache
+                WHERE model = :model AND generation = :generation
+                ORDER BY question_embedding <=> CAST(:embedding AS vector)
+                LIMIT 1
+                """,
+                Map.of("embedding", PgVectorText.toText(questionEmbedding), "model", model,
+                        "generation", generation),
+                (rs, rowNum) -> new AnswerCacheHit(rs.getString("answer"), rs.getDouble("similarity")))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Сохранение ответа
+     *
+     * @param question          вопрос
+     * @param questionEmbedding эмбеддинг вопроса
+     * @param answer            ответ
+     * @param model             chat модель
+     * @param generation        поколение базы знаний
+     */
+    public void save(final String question, final float[] questionEmbedding, final String answer,
+            final String model, final long generation) {
+        jdbcTemplate.update("""
+                INSERT INTO answer_cache (question, question_embedding, answer, model, generation)
+                VALUES (:question, CAST(:embedding AS vector), :answer, :model, :generation)
+                """,
+                Map.of("question", question, "embedding", PgVectorText.toText(questionEmbedding),
+                        "answer", answer, "model", model, "generation", generation));
+    }
+
+    /**
+     * Удаление ответов прошлых поколений базы знаний и ответов старше границы TTL
+     * HNSW индекс фильтрует по поколению и модели уже после выбора ближайших кандидатов,
+     * устаревшие строки среди кандидатов превращают попадание в промах
+     *
+     * @param generation    текущее поколение базы знаний
+     * @param createdBefore граница TTL
+     * @return количество удаленных строк
+     */
+    public int deleteStale(final long generation, final LocalDateTime createdBefore) {
+        return jdbcTemplate.update(
+                "DELETE FROM answer_cache WHERE generation < :generation OR created_at < :createdBefore",
+                Map.of("generation", generation, "createdBefore", createdBefore));
+    }
+}
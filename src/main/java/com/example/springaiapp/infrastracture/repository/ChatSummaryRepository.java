@@ -0,0 +1,66 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.springaiapp.domain.model.ChatSummaryModel;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Репозиторий кратких содержаний чатов (таблица chat_summary, одна строка на чат)
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChatSummaryRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Краткое содержание чата
+     *
+     * @param chatId идентификатор чата
+     * @return краткое содержание или пустой Optional
+     */
+    public Optional<ChatSummaryModel> findByChatId(final long chatId) {
+        return jdbcTemplate.query("SELECT content, last_message_id FROM chat_summary WHERE chat_id = :chatId",
+                Map.of("chatId", chatId),
+                (rs, rowNum) -> ChatSummaryModel.builder()
+                        .content(rs.getString("content"))
+                        .lastMessageId(rs.getLong("last_message_id"))
+                        .build())
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Сохранение краткого содержания, новое заменяет сохраненное (сжатие чата выполняется последовательно)
+     * Если сообщения чата удалены, пока шло сжатие, краткое содержание не сохраняется
+     *
+     * @param chatId  идентификатор чата
+     * @param summary краткое содержание
+     */
+    public void upsert(final long chatId, final ChatSummaryModel summary) {
+        jdbcTemplate.update("""
+                INSERT INTO chat_summary (chat_id, content, last_message_id, updated_at)
+                SELECT :chatId, :content, :lastMessageId, CURRENT_TIMESTAMP
+                WHERE EXISTS (SELECT 1 FROM message WHERE id = :lastMessageId AND chat_id = :chatId)
+                ON CONFLICT (chat_id) DO UPDATE
+                SET content = EXCLUDED.content, last_message_id = EXCLUDED.last_message_id,
+                    updated_at = EXCLUDED.updated_at
+                """,
+                Map.of("chatId", chatId, "content", summary.getContent(),
+                        "lastMessageId", summary.getLastMessageId()));
+    }
+
+    /**
+     * Удаление краткого содержания чата
+     *
+     * @param chatId идентификатор чата
+     */
+    public void deleteByChatId(final long chatId) {
+        jdbcTemplate.update("DELETE FROM chat_summary WHERE chat_id = :chatId", Map.of("chatId", chatId));
+    }
+}
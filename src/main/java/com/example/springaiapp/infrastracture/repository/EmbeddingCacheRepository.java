@@ -0,0 +1,86 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Репозиторий content-addressed кэша эмбеддингов (таблица embedding_cache)
+ * Тип vector не поддерживается JPA, поэтому работаем через jdbc, как и с vector_store,
+ * вектор передается в текстовом виде с приведением к vector
+ */
+@Repository
+@RequiredArgsConstructor
+public class EmbeddingCacheRepository {
+    // ограничение количества параметров в одном IN
+    private static final int BATCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Пакетный поиск эмбеддингов по хешам текста
+     *
+     * @param model         embedding модель
+     * @param contentHashes хеши текстов чанков
+     * @return найденные эмбеддинги по хешу
+     */
+    public Map<String, float[]> findAll(final String model, final Collection<String> contentHashes) {
+        final var result = new HashMap<String, float[]>();
+        final var hashes = List.copyOf(contentHashes);
+        for (var from = 0; from < hashes.size(); from += BATCH_SIZE) {
+            final var batch = hashes.subList(from, Math.min(from + BATCH_SIZE, hashes.size()));
+            jdbcTemplate.query("""
+                    SELECT content_hash, embedding::text AS embedding
+                    FROM embedding_cache
+                    WHERE model = :model AND content_hash IN (:hashes)
+                    """,
+                    Map.of("model", model, "hashes", batch),
+                    (RowCallbackHandler) rs -> result.put(rs.getString("content_hash"),
+                            PgVectorText.toArray(rs.getString("embedding"))));
+        }
+        return result;
+    }
+
+    /**
+     * Пакетное сохранение эмбеддингов, уже сохраненные (другой репликой) пропускаются
+     *
+     * @param model      embedding модель
+     * @param embeddings эмбеддинги по хешу текста
+     */
+    public void saveAll(final String model, final Map<String, float[]> embeddings) {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+        final var params = embeddings.entrySet().stream()
+                .map(it -> new MapSqlParameterSource()
+                        .addValue("contentHash", it.getKey())
+                        .addValue("model", model)
+                        .addValue("embedding", PgVectorText.toText(it.getValue())))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO embedding_cache (content_hash, model, embedding)
+                VALUES (:contentHash, :model, CAST(:embedding AS vector))
+                ON CONFLICT (content_hash, model) DO NOTHING
+                """, params);
+    }
+
+    /**
+     * Удаление эмбеддингов старше границы TTL
+     *
+     * @param createdBefore граница TTL
+     * @return количество удаленных строк
+     */
+    public int deleteCreatedBefore(final LocalDateTime createdBefore) {
+        return jdbcTemplate.update("DELETE FROM embedding_cache WHERE created_at < :createdBefore",
+                Map.of("createdBefore", createdBefore));
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.springaiapp.infrastracture.entity.KnowledgeBaseVersionEntity;
+
+/**
+ * Репозиторий для работы с поколением базы знаний
+ */
+@Repository
+public interface KnowledgeBaseVersionRepository extends JpaRepository<KnowledgeBaseVersionEntity, Long> {
+
+    /**
+     * Атомарное увеличение поколения (без чтения строки в приложение)
+     *
+     * @param id идентификатор строки
+     * @return количество обновленных строк
+     */
+    @Modifying
+    @Query("UPDATE KnowledgeBaseVersionEntity v SET v.generation = v.generation + 1, "
+            + "v.updatedAt = CURRENT_TIMESTAMP WHERE v.id = :id")
+    int increment(@Param("id") Long id);
+}
@@ -0,0 +1,102 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Репозиторий чанков загруженных файлов (таблица loaded_content_chunk)
+ * Связывает чанки vector_store с файлом и хешем текста, чтобы при изменении файла
+ * перезаписывать только изменившиеся чанки
+ */
+@Repository
+@RequiredArgsConstructor
+public class LoadedContentChunkRepository {
+    // ограничение количества параметров в одном IN
+    private static final int BATCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Чанк файла
+     *
+     * @param chunkId     id чанка в vector_store
+     * @param filename    имя файла
+     * @param contentHash sha256 текста чанка
+     */
+    public record LoadedContentChunk(String chunkId, String filename, String contentHash) {
+    }
+
+    /**
+     * Чанки файла
+     *
+     * @param filename имя файла
+     * @return сохраненные чанки файла
+     */
+    public List<LoadedContentChunk> findByFilename(final String filename) {
+        return jdbcTemplate.query(
+                "SELECT chunk_id, filename, content_hash FROM loaded_content_chunk WHERE filename = :filename",
+                Map.of("filename", filename),
+                (rs, rowNum) -> new LoadedContentChunk(rs.getString("chunk_id"), rs.getString("filename"),
+                        rs.getString("content_hash")));
+    }
+
+    /**
+     * Идентификаторы чанков файлов
+     *
+     * @param filenames имена файлов
+     * @return id чанков в vector_store
+     */
+    public List<String> findChunkIdsByFilenames(final Collection<String> filenames) {
+        if (filenames.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(
+                "SELECT chunk_id::text FROM loaded_content_chunk WHERE filename IN (:filenames)",
+                Map.of("filenames", filenames), String.class);
+    }
+
+    /**
+     * Пакетное сохранение чанков
+     *
+     * @param chunks чанки
+     */
+    public void saveAll(final List<LoadedContentChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        final var params = chunks.stream()
+                .map(it -> new MapSqlParameterSource()
+                        .addValue("chunkId", UUID.fromString(it.chunkId()))
+                        .addValue("filename", it.filename())
+                        .addValue("contentHash", it.contentHash()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO loaded_content_chunk (chunk_id, filename, content_hash)
+                VALUES (:chunkId, :filename, :contentHash)
+                ON CONFLICT (chunk_id) DO UPDATE SET
+                    filename = EXCLUDED.filename,
+                    content_hash = EXCLUDED.content_hash
+                """, params);
+    }
+
+    /**
+     * Удаление чанков по идентификаторам
+     *
+     * @param chunkIds id чанков
+     */
+    public void deleteAllByIds(final Collection<String> chunkIds) {
+        final var uuids = chunkIds.stream().map(UUID::fromString).toList();
+        for (var from = 0; from < uuids.size(); from += BATCH_SIZE) {
+            jdbcTemplate.update("DELETE FROM loaded_content_chunk WHERE chunk_id IN (:ids)",
+                    Map.of("ids", uuids.subList(from, Math.min(from + BATCH_SIZE, uuids.size()))));
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.springaiapp.infrastracture.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -45,12 +47,42 @@ public interface LoadedContentRepository extends JpaRepository<LoadedContentEnti
     boolean existsByHashAndFilename(String hash, String filename);
 
     /**
-     * Массовое получение загруженного контента по списку хешей и имен файлов
+     * Массовое получение загруженного контента по хешам и именам файлов
+     * Условие по ведущей колонке hash использует уникальный индекс (hash, filename),
+     * точное совпадение пар проверяется на стороне сервиса
      *
-     * @param hashes множество хешей
-     * @param filenames множество имен файлов
+     * @param hashes    хеши файлов
+     * @param filenames имена файлов
      * @return список найденных сущностей LoadedContentEntity
      */
-    @Query("SELECT lc FROM LoadedContentEntity lc WHERE lc.filename || '-' || lc.hash IN :filenamehashes")
-    List<LoadedContentEntity> findByFilenamehashes(@Param("filenamehashes") Set<String> filenamehashes);
+    List<LoadedContentEntity> findByHashInAndFilenameIn(Collection<String> hashes, Collection<String> filenames);
+
+    /**
+     * Имена всех загруженных файлов
+     *
+     * @return множество имен файлов
+     */
+    @Query("SELECT DISTINCT lc.filename FROM LoadedContentEntity lc")
+    Set<String> findAllFilenames();
+
+    /**
+     * Удаление остальных версий файла
+     *
+     * @param filename имя файла
+     * @param hash     хеш актуальной версии
+     * @return количество удаленных записей
+     */
+    @Modifying
+    @Query("DELETE FROM LoadedContentEntity lc WHERE lc.filename = :filename AND lc.hash <> :hash")
+    int deleteOtherVersions(@Param("filename") String filename, @Param("hash") String hash);
+
+    /**
+     * Удаление всех версий файлов
+     *
+     * @param filenames имена файлов
+     * @return количество удаленных записей
+     */
+    @Modifying
+    @Query("DELETE FROM LoadedContentEntity lc WHERE lc.filename IN :filenames")
+    int deleteByFilenames(@Param("filenames") Collection<String> filenames);
 }
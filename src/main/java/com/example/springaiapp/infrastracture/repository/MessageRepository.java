@@ -3,6 +3,7 @@ package com.example.springaiapp.infrastracture.repository;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -62,23 +63,64 @@ public interface MessageRepository extends JpaRepository<MessageEntity, Long> {
     long countByChatId(Long chatId);
 
     /**
-     * Поиск последнего сообщения в чате
+     * Последние сообщения чата, от новых к старым
+     * Прямой проход индекса idx_message_chat_created_at_id, время не зависит от длины истории
      * 
      * @param chatId идентификатор чата
-     * @return последнее сообщение в чате или null
+     * @param limit  количество сообщений
+     * @return сообщения от новых к старым
      */
-    @Query("SELECT m FROM MessageEntity m WHERE m.chatId = :chatId ORDER BY m.createdAt DESC")
-    List<MessageEntity> findLastMessageInChat(@Param("chatId") Long chatId);
+    @Query("SELECT m FROM MessageEntity m WHERE m.chatId = :chatId ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageEntity> findNewestInChat(@Param("chatId") Long chatId, Limit limit);
 
     /**
-     * Поиск последний n сообщений начиная с самых старых
+     * Первые сообщения чата, от старых к новым
+     * Обратный проход индекса idx_message_chat_created_at_id
      * 
      * @param chatId идентификатор чата
-     * @param n      количество сообщений которые пропускаем
-     * @return последние n сообщений в чате или null
+     * @param limit  количество сообщений
+     * @return сообщения от старых к новым
      */
-    @Query("SELECT m FROM MessageEntity m WHERE m.chatId = :chatId ORDER BY m.createdAt OFFSET :n")
-    List<MessageEntity> findNewestMessagesInChatTopN(@Param("chatId") Long chatId, @Param("n") long n);
+    @Query("SELECT m FROM MessageEntity m WHERE m.chatId = :chatId ORDER BY m.createdAt, m.id")
+    List<MessageEntity> findOldestInChat(@Param("chatId") Long chatId, Limit limit);
+
+    /**
+     * Сообщения чата старше курсора (created_at, id), от новых к старым
+     * Прямой проход индекса idx_message_chat_created_at_id
+     * 
+     * @param chatId    идентификатор чата
+     * @param createdAt дата создания сообщения-курсора
+     * @param id        идентификатор сообщения-курсора
+     * @param limit     количество сообщений
+     * @return сообщения от новых к старым
+     */
+    @Query("""
+            SELECT m FROM MessageEntity m
+            WHERE m.chatId = :chatId
+              AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id))
+            ORDER BY m.createdAt DESC, m.id DESC
+            """)
+    List<MessageEntity> findOlderInChat(@Param("chatId") Long chatId, @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id, Limit limit);
+
+    /**
+     * Сообщения чата новее курсора (created_at, id), от старых к новым
+     * Обратный проход индекса idx_message_chat_created_at_id
+     * 
+     * @param chatId    идентификатор чата
+     * @param createdAt дата создания сообщения-курсора
+     * @param id        идентификатор сообщения-курсора
+     * @param limit     количество сообщений
+     * @return сообщения от старых к новым
+     */
+    @Query("""
+            SELECT m FROM MessageEntity m
+            WHERE m.chatId = :chatId
+              AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id))
+            ORDER BY m.createdAt, m.id
+            """)
+    List<MessageEntity> findNewerInChat(@Param("chatId") Long chatId, @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id, Limit limit);
 
     /**
      * Удаление всех сообщений в указанном чате
@@ -0,0 +1,32 @@
+package com.example.springaiapp.infrastracture.repository;
+
+/**
+ * Текстовое представление pgvector: [x1,x2,...]
+ * Библиотека pgvector-java (PGvector) не подключена,
+ * вектор передается строкой с приведением CAST(:param AS vector)
+ */
+final class PgVectorText {
+
+    private PgVectorText() {
+    }
+
+    static String toText(final float[] embedding) {
+        final var builder = new StringBuilder(embedding.length * 12).append('[');
+        for (var i = 0; i < embedding.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(embedding[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    static float[] toArray(final String embedding) {
+        final var values = embedding.substring(1, embedding.length() - 1).split(",");
+        final var result = new float[values.length];
+        for (var i = 0; i < values.length; i++) {
+            result[i] = Float.parseFloat(values[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.springaiapp.infrastracture.entity.QueryExpansionCacheEntity;
+
+/**
+ * Репозиторий для работы с сущностью QueryExpansionCache
+ * Предоставляет методы для чтения и записи кэшированных расширений запросов
+ */
+@Repository
+public interface QueryExpansionCacheRepository extends JpaRepository<QueryExpansionCacheEntity, Long> {
+
+    /**
+     * Поиск актуального расширения запроса
+     *
+     * @param queryHash    хеш нормализованного запроса
+     * @param model        модель, выполнившая расширение
+     * @param createdAfter граница TTL
+     * @return Optional с найденным расширением
+     */
+    Optional<QueryExpansionCacheEntity> findFirstByQueryHashAndModelAndCreatedAtAfterOrderByCreatedAtDesc(
+            String queryHash, String model, LocalDateTime createdAfter);
+
+    /**
+     * Сохранение расширения запроса (при гонке реплик существующая запись обновляется)
+     *
+     * @param queryHash хеш нормализованного запроса
+     * @param model     модель, выполнившая расширение
+     * @param query     нормализованный запрос
+     * @param expansion расширенный запрос
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO query_expansion_cache (query_hash, model, query, expansion, created_at)
+            VALUES (:queryHash, :model, :query, :expansion, CURRENT_TIMESTAMP)
+            ON CONFLICT (query_hash, model)
+            DO UPDATE SET expansion = EXCLUDED.expansion, created_at = EXCLUDED.created_at
+            """, nativeQuery = true)
+    void upsert(@Param("queryHash") String queryHash, @Param("model") String model,
+            @Param("query") String query, @Param("expansion") String expansion);
+
+    /**
+     * Удаление расширений старше границы TTL (они уже не читаются)
+     *
+     * @param createdBefore граница TTL
+     * @return количество удаленных строк
+     */
+    @Modifying
+    @Query("DELETE FROM QueryExpansionCacheEntity e WHERE e.createdAt < :createdBefore")
+    int deleteByCreatedAtBefore(@Param("createdBefore") LocalDateTime createdBefore);
+}
@@ -0,0 +1,354 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import com.example.springaiapp.domain.model.VectorIndexMode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Репозиторий для чтения чанков напрямую из таблицы vector_store
+ * Таблица управляется PgVectorStore, поэтому работаем через jdbc, а не через JPA
+ */
+@Repository
+@RequiredArgsConstructor
+public class VectorStoreRepository {
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+    // ограничение количества параметров в одном IN
+    private static final int DELETE_BATCH_SIZE = 1000;
+    // заголовок бинарного формата COPY: сигнатура, затем флаги и длина расширения заголовка (нули)
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Построчный обход всех чанков без построения списка документов
+     *
+     * @param consumer обработчик чанка
+     */
+    public void forEachChunk(final Consumer<Document> consumer) {
+        jdbcTemplate.query("SELECT id, content, metadata FROM vector_store", Map.of(),
+                (RowCallbackHandler) rs -> consumer.accept(toDocument(rs)));
+    }
+
+    /**
+     * Получение чанков по идентификаторам
+     *
+     * @param ids идентификаторы чанков
+     * @return найденные чанки (в произвольном порядке)
+     */
+    public List<Document> findAllByIds(final Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        final var uuids = ids.stream().map(UUID::fromString).toList();
+        return jdbcTemplate.query("SELECT id, content, metadata FROM vector_store WHERE id IN (:ids)",
+                Map.of("ids", uuids),
+                (rs, rowNum) -> toDocument(rs));
+    }
+
+    /**
+     * Полнотекстовый поиск по content_tsv (GIN индекс)
+     * Запрос нормализуется обеими конфигурациями (russian/english), лексемы to_tsvector объединяются через OR,
+     * чтобы длинные (расширенные) запросы не требовали наличия всех слов в чанке
+     * Лексемы берутся в кавычки: в tsquery они уже нормализованы, а символы url/путей не разбираются как операторы
+     *
+     * @param query текст запроса
+     * @param topK  максимальное количество чанков
+     * @return чанки, отсортированные по убыванию ts_rank_cd
+     */
+    public List<Document> searchFullText(final String query, final int topK) {
+        return jdbcTemplate.query("""
+                SELECT id, content, metadata, ts_rank_cd(content_tsv, q, 1) AS rank
+                FROM vector_store,
+                     (SELECT array_to_string(ARRAY(SELECT quote_literal(lexeme)
+                                 FROM unnest(tsvector_to_array(to_tsvector('russian', :query))) AS lexeme), ' | ')::tsquery
+                          || array_to_string(ARRAY(SELECT quote_literal(lexeme)
+                                 FROM unnest(tsvector_to_array(to_tsvector('english', :query))) AS lexeme), ' | ')::tsquery
+                          AS q) AS query
+                WHERE content_tsv @@ q
+                ORDER BY rank DESC
+                LIMIT :topK
+                """,
+                Map.of("query", query, "topK", topK),
+                (rs, rowNum) -> toDocument(rs).mutate().score(rs.getDouble("rank")).build());
+    }
+
+    /**
+     * Векторный поиск в два прохода: кандидаты по HNSW индексу выбранного режима,
+     * затем пересчет косинусной близости по полноразмерным эмбеддингам
+     * Выражения ORDER BY первого прохода совпадают с выражениями индексов из 008-vector-store-quantized-index.xml,
+     * размерности подставляются литералами, иначе индекс не используется
+     * Для FULL первый проход и есть результат
+     *
+     * @param mode                 режим индекса
+     * @param embedding            эмбеддинг запроса
+     * @param dimensions           размерность эмбеддингов
+     * @param matryoshkaDimensions размерность усеченной проекции (MATRYOSHKA)
+     * @param candidates           количество кандидатов первого прохода
+     * @param topK                 максимальное количество чанков
+     * @return чанки с косинусной близостью в score, по убыванию
+     */
+    public List<Document> searchByEmbedding(final VectorIndexMode mode, final float[] embedding,
+            final int dimensions, final int matryoshkaDimensions, final int candidates, final int topK) {
+        final var params = Map.<String, Object>of(
+                "embedding", PgVectorText.toText(embedding), "candidates", candidates, "topK", topK);
+        if (mode == VectorIndexMode.FULL) {
+            return jdbcTemplate.query("""
+                    SELECT id, content, metadata, 1 - (embedding <=> CAST(:embedding AS vector)) AS similarity
+                    FROM vector_store
+                    ORDER BY embedding <=> CAST(:embedding AS vector)
+                    LIMIT :topK
+                    """,
+                    params,
+                    (rs, rowNum) -> toDocument(rs).mutate().score(rs.getDouble("similarity")).build());
+        }
+        final var firstPassOrder = switch (mode) {
+            case HALFVEC -> "embedding::halfvec(%1$d) <=> CAST(:embedding AS vector)::halfvec(%1$d)"
+                    .formatted(dimensions);
+            case BINARY -> ("binary_quantize(embedding)::bit(%1$d)"
+                    + " <~> binary_quantize(CAST(:embedding AS vector))::bit(%1$d)")
+                    .formatted(dimensions);
+            case MATRYOSHKA -> ("subvector(embedding, 1, %1$d)::halfvec(%1$d)"
+                    + " <=> subvector(CAST(:embedding AS vector), 1, %1$d)::halfvec(%1$d)")
+                    .formatted(matryoshkaDimensions);
+            case FULL -> throw new IllegalStateException("Unexpected vector index mode " + mode);
+        };
+        return jdbcTemplate.query("""
+                WITH candidates AS (
+                    SELECT id, content, metadata, embedding
+                    FROM vector_store
+                    ORDER BY %s
+                    LIMIT :candidates
+                )
+                SELECT id, content, metadata, 1 - (embedding <=> CAST(:embedding AS vector)) AS similarity
+                FROM candidates
+                ORDER BY embedding <=> CAST(:embedding AS vector)
+                LIMIT :topK
+                """.formatted(firstPassOrder),
+                params,
+                (rs, rowNum) -> toDocument(rs).mutate().score(rs.getDouble("similarity")).build());
+    }
+
+    /**
+     * Пакетная запись чанков с готовыми эмбеддингами одним batch insert
+     * Формат строк совпадает с PgVectorStore: повторная запись по id заменяет чанк
+     *
+     * @param documents  чанки
+     * @param embeddings эмбеддинги в порядке чанков
+     */
+    public void saveAll(final List<Document> documents, final List<float[]> embeddings) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        final var params = new MapSqlParameterSource[documents.size()];
+        for (var i = 0; i < documents.size(); i++) {
+            final var document = documents.get(i);
+            params[i] = new MapSqlParameterSource()
+                    .addValue("id", UUID.fromString(document.getId()))
+                    .addValue("content", document.getText())
+                    .addValue("metadata", toJson(document.getMetadata()))
+                    .addValue("embedding", PgVectorText.toText(embeddings.get(i)));
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO vector_store (id, content, metadata, embedding)
+                VALUES (:id, :content, CAST(:metadata AS json), CAST(:embedding AS vector))
+                ON CONFLICT (id) DO UPDATE SET
+                    content = EXCLUDED.content,
+                    metadata = EXCLUDED.metadata,
+                    embedding = EXCLUDED.embedding
+                """, params);
+    }
+
+    /**
+     * Массовая запись чанков: COPY ... FROM STDIN (FORMAT BINARY) во временную таблицу vector_store_staging
+     * и одна вставка из нее в vector_store (повторная запись по id заменяет чанк)
+     * Строки передаются потоком в бинарном формате: без параметров на каждую строку и без разбора
+     * текстового представления вектора на стороне сервера
+     * Все запросы выполняются на одном соединении, временная таблица живет в сессии
+     *
+     * @param documents  чанки
+     * @param embeddings эмбеддинги в порядке чанков
+     */
+    public void copyAll(final List<Document> documents, final List<float[]> embeddings) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Void>) connection -> {
+            try (final var statement = connection.createStatement()) {
+                statement.execute("""
+                        CREATE TEMP TABLE IF NOT EXISTS vector_store_staging (
+                            id uuid, content text, metadata json, embedding vector
+                        ) ON COMMIT DELETE ROWS
+                        """);
+                statement.execute("TRUNCATE vector_store_staging");
+            }
+            copyToStaging(connection, documents, embeddings);
+            try (final var statement = connection.createStatement()) {
+                statement.executeUpdate("""
+                        INSERT INTO vector_store (id, content, metadata, embedding)
+                        SELECT id, content, metadata, embedding FROM vector_store_staging
+                        ON CONFLICT (id) DO UPDATE SET
+                            content = EXCLUDED.content,
+                            metadata = EXCLUDED.metadata,
+                            embedding = EXCLUDED.embedding
+                        """);
+            }
+            return null;
+        });
+    }
+
+    // строка: количество полей, затем каждое поле - длина и значение в бинарном формате типа (big-endian)
+    private void copyToStaging(final Connection connection, final List<Document> documents,
+            final List<float[]> embeddings) throws SQLException {
+        final var copy = new PGCopyOutputStream(connection.unwrap(PGConnection.class),
+                "COPY vector_store_staging (id, content, metadata, embedding) FROM STDIN (FORMAT BINARY)",
+                COPY_BUFFER_SIZE);
+        try {
+            final var out = new DataOutputStream(new BufferedOutputStream(copy, COPY_BUFFER_SIZE));
+            out.write(COPY_SIGNATURE);
+            out.writeInt(0);
+            out.writeInt(0);
+            for (var i = 0; i < documents.size(); i++) {
+                final var document = documents.get(i);
+                out.writeShort(4);
+                // uuid: 16 байт
+                final var id = UUID.fromString(document.getId());
+                out.writeInt(16);
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+                // text и json: UTF-8 текст
+                writeBytes(out, document.getText().getBytes(StandardCharsets.UTF_8));
+                writeBytes(out, toJson(document.getMetadata()).getBytes(StandardCharsets.UTF_8));
+                // vector (pgvector vector_recv): int16 размерность, int16 не используется, float4 координаты
+                final var embedding = embeddings.get(i);
+                out.writeInt(4 + embedding.length * Float.BYTES);
+                out.writeShort(embedding.length);
+                out.writeShort(0);
+                for (final var value : embedding) {
+                    out.writeFloat(value);
+                }
+            }
+            // конец данных
+            out.writeShort(-1);
+            out.close();
+        } catch (IOException e) {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+            throw new SQLException("Failed to copy chunks into vector_store_staging", e);
+        }
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    /**
+     * Пуста ли таблица vector_store
+     */
+    public boolean isEmpty() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT NOT EXISTS (SELECT 1 FROM vector_store)", Map.of(), Boolean.class));
+    }
+
+    /**
+     * Удаление HNSW индексов vector_store перед первичной массовой загрузкой:
+     * построить индекс один раз по всем строкам быстрее, чем обновлять его на каждой вставке
+     * Если индекс не будет восстановлен (например, процесс упал), его пересоздаст при следующем старте
+     * runAlways changeset из 008-vector-store-quantized-index.xml
+     *
+     * @return определения удаленных индексов для createIndexes
+     */
+    public List<String> dropVectorIndexes() {
+        final var indexes = jdbcTemplate.query("""
+                SELECT indexname, indexdef FROM pg_indexes
+                WHERE schemaname = current_schema() AND tablename = 'vector_store' AND indexdef LIKE '%USING hnsw%'
+                """,
+                Map.of(),
+                (rs, rowNum) -> Map.entry(rs.getString("indexname"), rs.getString("indexdef")));
+        indexes.forEach(it -> jdbcTemplate.getJdbcTemplate()
+                .execute("DROP INDEX IF EXISTS \"" + it.getKey() + "\""));
+        return indexes.stream().map(Map.Entry::getValue).toList();
+    }
+
+    /**
+     * Создание индексов по определениям из dropVectorIndexes
+     *
+     * Индекс, уже созданный другой репликой, пропускается
+     *
+     * @param definitions CREATE INDEX ... из pg_indexes
+     */
+    public void createIndexes(final List<String> definitions) {
+        definitions.forEach(it -> jdbcTemplate.getJdbcTemplate()
+                .execute(it.replaceFirst("^CREATE (UNIQUE )?INDEX ", "CREATE $1INDEX IF NOT EXISTS ")));
+    }
+
+    /**
+     * Удаление чанков по идентификаторам
+     *
+     * @param ids идентификаторы чанков
+     */
+    public void deleteAllByIds(final Collection<String> ids) {
+        final var uuids = ids.stream().map(UUID::fromString).toList();
+        for (var from = 0; from < uuids.size(); from += DELETE_BATCH_SIZE) {
+            jdbcTemplate.update("DELETE FROM vector_store WHERE id IN (:ids)",
+                    Map.of("ids", uuids.subList(from, Math.min(from + DELETE_BATCH_SIZE, uuids.size()))));
+        }
+    }
+
+    private String toJson(final Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize vector_store metadata", e);
+        }
+    }
+
+    private Document toDocument(final ResultSet rs) throws SQLException {
+        return Document.builder()
+                .id(rs.getString("id"))
+                .text(rs.getString("content"))
+                .metadata(parseMetadata(rs.getString("metadata")))
+                .build();
+    }
+
+    private Map<String, Object> parseMetadata(final String metadata) {
+        if (!StringUtils.hasText(metadata)) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(metadata, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to parse vector_store metadata", e);
+        }
+    }
+}
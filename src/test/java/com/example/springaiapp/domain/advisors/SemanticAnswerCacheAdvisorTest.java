@@ -0,0 +1,79 @@
+package com.example.springaiapp.domain.advisors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import com.example.springaiapp.domain.service.AnswerCacheService;
+import com.example.springaiapp.domain.service.impl.PostgresChatMemoryService;
+
+/**
+ * Кэш ответов применяется только к первому вопросу чата, краткое содержание в окне памяти - это история
+ */
+class SemanticAnswerCacheAdvisorTest {
+    private static final String QUESTION = "Как настроить загрузку базы знаний?";
+
+    private AnswerCacheService answerCacheService;
+    private CallAdvisorChain chain;
+    private SemanticAnswerCacheAdvisor advisor;
+
+    @BeforeEach
+    void setUp() {
+        answerCacheService = mock(AnswerCacheService.class);
+        when(answerCacheService.find(anyString())).thenReturn(Optional.empty());
+        chain = mock(CallAdvisorChain.class);
+        when(chain.nextCall(any())).thenReturn(ChatClientResponse.builder()
+                .chatResponse(ChatResponse.builder()
+                        .generations(List.of(new Generation(new AssistantMessage("ответ"))))
+                        .build())
+                .build());
+        advisor = SemanticAnswerCacheAdvisor.builder().answerCacheService(answerCacheService).build();
+    }
+
+    @Test
+    void firstQuestionUsesCache() {
+        advisor.adviseCall(request(List.of(new UserMessage(QUESTION))), chain);
+
+        verify(answerCacheService).find(QUESTION);
+        verify(answerCacheService).put(QUESTION, "ответ");
+    }
+
+    @Test
+    void windowWithOnlySummaryIsNotFirstTurn() {
+        final var summary = SystemMessage.builder()
+                .text("Краткое содержание")
+                .metadata(Map.of(PostgresChatMemoryService.SUMMARY_METADATA_KEY, true))
+                .build();
+
+        final var response = advisor.adviseCall(request(List.of(summary, new UserMessage(QUESTION))), chain);
+
+        assertThat(response.chatResponse().getResult().getOutput().getText()).isEqualTo("ответ");
+        verify(answerCacheService, never()).find(anyString());
+        verify(answerCacheService, never()).put(anyString(), anyString());
+    }
+
+    private static ChatClientRequest request(final List<Message> messages) {
+        return ChatClientRequest.builder().prompt(new Prompt(messages)).context(Map.of()).build();
+    }
+}
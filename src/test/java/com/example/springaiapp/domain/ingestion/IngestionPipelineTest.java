@@ -0,0 +1,200 @@
+package com.example.springaiapp.domain.ingestion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.springaiapp.domain.model.LoadedContentModel;
+import com.example.springaiapp.domain.service.ChunkTermVectorService;
+import com.example.springaiapp.domain.service.CooccurrenceIndexService;
+import com.example.springaiapp.domain.service.LexicalIndexService;
+import com.example.springaiapp.domain.service.LoadedContentMapperService;
+import com.example.springaiapp.domain.service.LoadedContentService;
+import com.example.springaiapp.domain.utils.HashUtils;
+import com.example.springaiapp.infrastracture.repository.LoadedContentChunkRepository;
+import com.example.springaiapp.infrastracture.repository.LoadedContentChunkRepository.LoadedContentChunk;
+import com.example.springaiapp.infrastracture.repository.VectorStoreRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Конвейер загрузки на заглушках модели и репозиториев: файл отмечается загруженным только после
+ * записи всех его чанков, измененный файл эмбеддит новые и удаляет только устаревшие чанки
+ */
+class IngestionPipelineTest {
+    private static final String FAILING_MARKER = "FAIL";
+
+    @TempDir
+    Path directory;
+
+    private final StubEmbeddingModel embeddingModel = new StubEmbeddingModel();
+    // события записи чанков и завершения файлов в порядке выполнения
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private LoadedContentService loadedContentService;
+    private VectorStoreRepository vectorStoreRepository;
+    private LoadedContentChunkRepository loadedContentChunkRepository;
+    private LexicalIndexService lexicalIndexService;
+
+    @BeforeEach
+    void setUp() {
+        loadedContentService = mock(LoadedContentService.class);
+        when(loadedContentService.replaceLoadedContent(any())).thenAnswer(invocation -> {
+            final LoadedContentModel model = invocation.getArgument(0);
+            events.add("complete " + model.getFilename());
+            return model;
+        });
+        vectorStoreRepository = mock(VectorStoreRepository.class);
+        doAnswer(invocation -> {
+            final List<Document> documents = invocation.getArgument(0);
+            documents.forEach(it -> events.add("write " + it.getText()));
+            return null;
+        }).when(vectorStoreRepository).saveAll(anyList(), anyList());
+        loadedContentChunkRepository = mock(LoadedContentChunkRepository.class);
+        lexicalIndexService = mock(LexicalIndexService.class);
+    }
+
+    @Test
+    void fileSplitAcrossEmbedBatchesIsRecordedAfterItsLastChunk() throws IOException {
+        final var file = file("big.txt", "one\ntwo\nthree\nfour\nfive");
+
+        final var loaded = pipeline(2).run(List.of(file));
+
+        assertThat(loaded).extracting(LoadedContentModel::getFilename).containsExactly("big.txt");
+        assertThat(loaded.getFirst().getChunkCount()).isEqualTo(5);
+        assertThat(embeddingModel.batchSizes).allMatch(it -> it <= 2).hasSizeGreaterThanOrEqualTo(3);
+        assertThat(events.subList(0, 5)).containsExactlyInAnyOrder(
+                "write one", "write two", "write three", "write four", "write five");
+        assertThat(events).last().isEqualTo("complete big.txt");
+    }
+
+    @Test
+    void failedEmbedBatchLeavesFileUnrecorded() throws IOException {
+        final var good = file("good.txt", "alpha\nbeta");
+        final var bad = file("bad.txt", "gamma\n" + FAILING_MARKER + " delta");
+
+        final var loaded = pipeline(1).run(List.of(good, bad));
+
+        assertThat(loaded).extracting(LoadedContentModel::getFilename).containsExactly("good.txt");
+        final var recorded = ArgumentCaptor.forClass(LoadedContentModel.class);
+        verify(loadedContentService, times(1)).replaceLoadedContent(recorded.capture());
+        assertThat(recorded.getValue().getFilename()).isEqualTo("good.txt");
+        assertThat(events).doesNotContain("complete bad.txt");
+    }
+
+    @Test
+    void changedFileDeletesOnlyObsoleteChunks() throws IOException {
+        when(loadedContentChunkRepository.findByFilename("doc.txt")).thenReturn(List.of(
+                new LoadedContentChunk("old-kept", "doc.txt", HashUtils.sha256Hex("line one")),
+                new LoadedContentChunk("old-removed", "doc.txt", HashUtils.sha256Hex("removed line"))));
+        final var file = file("doc.txt", "line one\nline three");
+
+        final var loaded = pipeline(8).run(List.of(file));
+
+        assertThat(loaded.getFirst().getChunkCount()).isEqualTo(2);
+        assertThat(embeddingModel.texts).containsExactly("line three");
+        verify(vectorStoreRepository).deleteAllByIds(List.of("old-removed"));
+        verify(loadedContentChunkRepository).deleteAllByIds(List.of("old-removed"));
+        verify(lexicalIndexService).removeDocuments(List.of("old-removed"));
+        verify(vectorStoreRepository, never()).deleteAllByIds(List.of("old-kept"));
+    }
+
+    private IngestionPipeline pipeline(final int embedBatchSize) {
+        final var chunkTermVectorService = mock(ChunkTermVectorService.class);
+        when(chunkTermVectorService.enrich(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        final var loadedContentMapperService = mock(LoadedContentMapperService.class);
+        when(loadedContentMapperService.createLoadedContentModel(anyString(), anyString(), anyInt()))
+                .thenAnswer(invocation -> LoadedContentModel.builder()
+                        .filename(invocation.getArgument(0))
+                        .hash(invocation.getArgument(1))
+                        .chunkCount(invocation.getArgument(2))
+                        .build());
+        return IngestionPipeline.builder()
+                .loadedContentService(loadedContentService)
+                .loadedContentMapperService(loadedContentMapperService)
+                .textSplitter(new LineTextSplitter())
+                .chunkTermVectorService(chunkTermVectorService)
+                .embeddingModel(embeddingModel)
+                .vectorStoreRepository(vectorStoreRepository)
+                .loadedContentChunkRepository(loadedContentChunkRepository)
+                .transactionTemplate(new TransactionTemplate(mock(PlatformTransactionManager.class)))
+                .lexicalIndexService(lexicalIndexService)
+                .cooccurrenceIndexService(mock(CooccurrenceIndexService.class))
+                .meterRegistry(new SimpleMeterRegistry())
+                .hashThreads(1)
+                .splitThreads(1)
+                .embedThreads(1)
+                .embedBatchSize(embedBatchSize)
+                .writeThreads(1)
+                .linger(Duration.ofMillis(20))
+                .build();
+    }
+
+    private Resource file(final String name, final String content) throws IOException {
+        return new FileSystemResource(Files.writeString(directory.resolve(name), content));
+    }
+
+    // чанк - непустая строка файла
+    private static class LineTextSplitter extends TextSplitter {
+        @Override
+        protected List<String> splitText(final String text) {
+            return Arrays.stream(text.split("\n")).filter(it -> !it.isBlank()).toList();
+        }
+    }
+
+    // эмбеддинг фиксированный, пакет с FAILING_MARKER падает
+    private static class StubEmbeddingModel implements EmbeddingModel {
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> texts = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public EmbeddingResponse call(final EmbeddingRequest request) {
+            if (request.getInstructions().stream().anyMatch(it -> it.contains(FAILING_MARKER))) {
+                throw new IllegalStateException("Embedding failed");
+            }
+            batchSizes.add(request.getInstructions().size());
+            texts.addAll(request.getInstructions());
+            final var embeddings = new ArrayList<Embedding>();
+            for (var i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(new float[] { 1.0f, 0.0f }, i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(final Document document) {
+            return new float[] { 1.0f, 0.0f };
+        }
+    }
+}
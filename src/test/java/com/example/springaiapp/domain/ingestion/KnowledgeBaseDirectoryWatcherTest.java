@@ -0,0 +1,105 @@
+package com.example.springaiapp.domain.ingestion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.springaiapp.domain.service.IngestionJobService;
+
+/**
+ * Накопление событий каталога базы знаний до затишья и отправка на загрузку
+ */
+class KnowledgeBaseDirectoryWatcherTest {
+    private static final Duration DEBOUNCE = Duration.ofMillis(500);
+    private static final long WAIT_MILLIS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    private IngestionJobService ingestionJobService;
+    private KnowledgeBaseDirectoryWatcher watcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(directory.resolve("a"));
+        Files.createDirectories(directory.resolve("b"));
+        Files.writeString(directory.resolve("a/existing.txt"), "existing");
+        ingestionJobService = mock(IngestionJobService.class);
+        when(ingestionJobService.submitChanges(anyList(), any())).thenReturn(true);
+        watcher = new KnowledgeBaseDirectoryWatcher(ingestionJobService);
+        ReflectionTestUtils.setField(watcher, "directory", directory);
+        ReflectionTestUtils.setField(watcher, "debounce", DEBOUNCE);
+        ReflectionTestUtils.setField(watcher, "maxDelay", Duration.ofMinutes(1));
+        watcher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        watcher.stop();
+    }
+
+    @Test
+    void repeatedChangesAreCoalescedIntoOneLoadAfterDebounce() throws IOException {
+        final var file = directory.resolve("a/new.txt");
+        for (var i = 0; i < 5; i++) {
+            Files.writeString(file, "version " + i);
+        }
+
+        verify(ingestionJobService, after(DEBOUNCE.toMillis() / 2).never()).submitChanges(anyList(), any());
+        final var submitted = captureSubmission();
+        assertThat(submitted.changed()).extracting(Resource::getFilename).containsExactly("new.txt");
+        assertThat(submitted.deleted()).isEmpty();
+        verify(ingestionJobService, after(DEBOUNCE.toMillis() * 2).times(1)).submitChanges(anyList(), any());
+    }
+
+    @Test
+    void deletedFileIsSubmittedForPurge() throws IOException {
+        Files.delete(directory.resolve("a/existing.txt"));
+
+        final var submitted = captureSubmission();
+        assertThat(submitted.changed()).isEmpty();
+        assertThat(submitted.deleted()).containsExactly("existing.txt");
+    }
+
+    @Test
+    void fileMovedBetweenSubdirectoriesIsLoadedNotDeleted() throws IOException {
+        Files.move(directory.resolve("a/existing.txt"), directory.resolve("b/existing.txt"));
+
+        final var submitted = captureSubmission();
+        assertThat(submitted.changed()).extracting(Resource::getFilename).containsExactly("existing.txt");
+        assertThat(submitted.deleted()).isEmpty();
+        verify(ingestionJobService, never()).start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Submission captureSubmission() {
+        final ArgumentCaptor<List<Resource>> changed = ArgumentCaptor.forClass(List.class);
+        final ArgumentCaptor<Collection<String>> deleted = ArgumentCaptor.forClass(Collection.class);
+        verify(ingestionJobService, timeout(WAIT_MILLIS)).submitChanges(changed.capture(), deleted.capture());
+        return new Submission(changed.getValue(), deleted.getValue());
+    }
+
+    private record Submission(List<Resource> changed, Collection<String> deleted) {
+    }
+}
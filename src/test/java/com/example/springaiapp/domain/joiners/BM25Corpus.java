@@ -0,0 +1,48 @@
+package com.example.springaiapp.domain.joiners;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.ai.document.Document;
+
+/**
+ * Детерминированный синтетический корпус чанков для теста и бенчмарка BM25
+ */
+final class BM25Corpus {
+    static final String ENGLISH_QUERY = "How to tune garbage collection pauses in the JVM heap, error ERR-1042";
+    static final String RUSSIAN_QUERY = "Как настроить пул соединений базы данных и таймауты транзакций";
+
+    private static final String[] ENGLISH_WORDS = ("java jvm heap garbage collection pause tuning memory thread "
+            + "pool connection database transaction timeout index query planner cache eviction latency "
+            + "throughput service request response error retry backoff circuit breaker queue message "
+            + "consumer producer partition offset commit rollback lock deadlock schema migration vector "
+            + "embedding search ranking document chunk token model prompt context window stream").split(" ");
+    private static final String[] RUSSIAN_WORDS = ("java куча сборщик мусора пауза настройка память поток пул "
+            + "соединение база данных транзакция таймаут индекс запрос планировщик кэш вытеснение задержка "
+            + "пропускная способность сервис ответ ошибка повтор очередь сообщение потребитель производитель "
+            + "раздел смещение фиксация откат блокировка схема миграция вектор поиск ранжирование документ "
+            + "фрагмент модель контекст окно поток").split(" ");
+    private static final String[] IDENTIFIERS = { "ERR-1042", "ERR-2077", "TX-500", "HNSW", "BM25" };
+
+    private BM25Corpus() {
+    }
+
+    static List<Document> generate(final int size, final long seed) {
+        final var random = new Random(seed);
+        final var documents = new ArrayList<Document>(size);
+        for (var i = 0; i < size; i++) {
+            final var words = random.nextBoolean() ? ENGLISH_WORDS : RUSSIAN_WORDS;
+            final var length = 150 + random.nextInt(100);
+            final var text = new StringBuilder();
+            for (var w = 0; w < length; w++) {
+                text.append(random.nextInt(50) == 0
+                        ? IDENTIFIERS[random.nextInt(IDENTIFIERS.length)]
+                        : words[random.nextInt(words.length)])
+                        .append(w % 12 == 11 ? ". " : " ");
+            }
+            documents.add(Document.builder().id("doc-" + i).text(text.toString()).build());
+        }
+        return documents;
+    }
+}
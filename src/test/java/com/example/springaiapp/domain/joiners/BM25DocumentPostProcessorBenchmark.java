@@ -0,0 +1,88 @@
+package com.example.springaiapp.domain.joiners;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import com.example.springaiapp.domain.service.impl.ChunkTermVectorServiceImpl;
+import com.example.springaiapp.domain.service.impl.TextAnalysisServiceImpl;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * JMH бенчмарк переранжирования BM25: исходная реализация против новой
+ * Новая реализация измеряется с прогретым кэшем векторов терминов (как для повторно найденных чанков)
+ * Запуск:
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.example.springaiapp.domain.joiners.BM25DocumentPostProcessorBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BM25DocumentPostProcessorBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    private int candidates;
+
+    private TextAnalysisServiceImpl textAnalysisService;
+    private List<Document> corpus;
+    private Query query;
+    private LegacyBM25DocumentPostProcessor legacy;
+    private BM25DocumentPostProcessor current;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        textAnalysisService = new TextAnalysisServiceImpl();
+        corpus = BM25Corpus.generate(candidates, 42);
+        query = new Query(BM25Corpus.ENGLISH_QUERY);
+        legacy = LegacyBM25DocumentPostProcessor.builder().limit(5).build();
+        current = BM25DocumentPostProcessor.builder()
+                .textAnalysisService(textAnalysisService)
+                .chunkTermVectorService(new ChunkTermVectorServiceImpl(textAnalysisService,
+                        Caffeine.newBuilder().maximumSize(10_000).build()))
+                .limit(5)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        textAnalysisService.close();
+    }
+
+    @Benchmark
+    public List<Document> legacy() {
+        return legacy.process(query, corpus);
+    }
+
+    @Benchmark
+    public List<Document> current() {
+        return current.process(query, corpus);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BM25DocumentPostProcessorBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.springaiapp.domain.joiners;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import com.example.springaiapp.domain.service.impl.ChunkTermVectorServiceImpl;
+import com.example.springaiapp.domain.service.impl.TextAnalysisServiceImpl;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Новая реализация BM25 должна ранжировать так же, как исходная
+ */
+class BM25DocumentPostProcessorTest {
+    private static TextAnalysisServiceImpl textAnalysisService;
+
+    @BeforeAll
+    static void setUp() {
+        textAnalysisService = new TextAnalysisServiceImpl();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        textAnalysisService.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { BM25Corpus.ENGLISH_QUERY, BM25Corpus.RUSSIAN_QUERY })
+    void rerankMatchesLegacyImplementation(final String queryText) {
+        final var corpus = BM25Corpus.generate(200, 42);
+        final var query = new Query(queryText);
+
+        final var expected = LegacyBM25DocumentPostProcessor.builder().limit(10).build()
+                .process(query, corpus);
+        final var actual = BM25DocumentPostProcessor.builder()
+                .textAnalysisService(textAnalysisService)
+                .chunkTermVectorService(new ChunkTermVectorServiceImpl(textAnalysisService,
+                        Caffeine.newBuilder().maximumSize(10_000).build()))
+                .limit(10)
+                .build()
+                .process(query, corpus);
+
+        assertThat(actual).extracting(Document::getId)
+                .containsExactlyElementsOf(expected.stream().map(Document::getId).toList());
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.springaiapp.domain.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.springaiapp.SpringAiAppApplication;
+import com.example.springaiapp.domain.memory.MessageRingBuffer;
+import com.example.springaiapp.domain.model.ChatMemoryMode;
+import com.example.springaiapp.infrastracture.entity.ChatEntity;
+import com.example.springaiapp.infrastracture.entity.MessageEntity;
+import com.example.springaiapp.infrastracture.repository.ChatRepository;
+import com.example.springaiapp.infrastracture.repository.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Отложенная запись сообщений: окно памяти видит сообщения до записи, порядок сохраняется,
+ * при остановке очередь дописывается, непредвиденная ошибка не оставляет сообщения в pending
+ */
+@ActiveProfiles("test")
+@SpringBootTest(classes = SpringAiAppApplication.class)
+class MessageWriteBehindServiceImplTest {
+    private static final int MAX_MESSAGES = 10;
+    private static final long WAIT_MILLIS = 10_000;
+
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private ChatRepository chatRepository;
+    @Autowired
+    private MessageMapperService messageMapperService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Cache<String, MessageRingBuffer> cache = Caffeine.newBuilder().build();
+    private MessageWriteBehindServiceImpl writeBehindService;
+    private Long chatId;
+
+    @BeforeEach
+    void setUp() {
+        final var chat = new ChatEntity();
+        chat.setTitle("write-behind");
+        chat.setCreatedAt(LocalDateTime.now());
+        chatId = chatRepository.save(chat).getId();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writeBehindService.shutdown();
+    }
+
+    @Test
+    void windowShowsMessagesBeforeAndAfterTheyAreWritten() throws InterruptedException {
+        writeBehindService = start(transactionTemplate);
+        final var memory = memory();
+        final var conversationId = String.valueOf(chatId);
+        memory.get(conversationId);
+
+        for (var i = 0; i < 6; i++) {
+            memory.add(conversationId, List.of(new UserMessage("q" + i), new AssistantMessage("a" + i)));
+            assertThat(texts(memory.get(conversationId))).endsWith("q" + i, "a" + i);
+        }
+        final var expected = List.of("a1", "q2", "a2", "q3", "a3", "q4", "a4", "q5", "a5");
+        assertThat(texts(memory.get(conversationId))).endsWith(expected.toArray(String[]::new));
+
+        await(() -> messageRepository.countByChatId(chatId) == 12);
+        assertThat(writeBehindService.pending(chatId, Set.of())).isEmpty();
+        assertThat(texts(memory.get(conversationId))).hasSize(MAX_MESSAGES)
+                .endsWith(expected.toArray(String[]::new));
+        cache.invalidateAll();
+        assertThat(texts(memory.get(conversationId))).hasSize(MAX_MESSAGES)
+                .endsWith(expected.toArray(String[]::new));
+    }
+
+    @Test
+    void shutdownFlushesQueuedMessages() throws InterruptedException {
+        writeBehindService = start(transactionTemplate);
+        final var messages = IntStream.range(0, 50)
+                .mapToObj(i -> messageMapperService.createAssistantMessage(chatId, "m" + i))
+                .toList();
+        writeBehindService.enqueue(messages);
+
+        writeBehindService.shutdown();
+
+        assertThat(messageRepository.findOldestInChat(chatId, Limit.of(100)))
+                .extracting(MessageEntity::getContent)
+                .containsExactlyElementsOf(messages.stream().map(MessageEntity::getContent).toList());
+    }
+
+    @Test
+    void unexpectedFailureRemovesBatchFromPending() throws InterruptedException {
+        final var failingTemplate = mock(TransactionTemplate.class);
+        doThrow(new IllegalStateException("boom")).when(failingTemplate).executeWithoutResult(any());
+        writeBehindService = start(failingTemplate);
+
+        writeBehindService.enqueue(List.of(messageMapperService.createAssistantMessage(chatId, "lost")));
+
+        await(() -> writeBehindService.pending(chatId, Set.of()).isEmpty());
+        assertThat(messageRepository.countByChatId(chatId)).isZero();
+    }
+
+    private MessageWriteBehindServiceImpl start(final TransactionTemplate template) {
+        final var service = new MessageWriteBehindServiceImpl(messageRepository, messageMapperService, template,
+                cache, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(service, "batchSize", 16);
+        ReflectionTestUtils.setField(service, "shutdownTimeout", Duration.ofSeconds(10));
+        service.start();
+        return service;
+    }
+
+    private PostgresChatMemoryService memory() {
+        return PostgresChatMemoryService.builder()
+                .maxMessages(MAX_MESSAGES)
+                .mode(ChatMemoryMode.MESSAGES)
+                .messageRepository(messageRepository)
+                .messageMapperService(messageMapperService)
+                .cache(cache)
+                .messageWriteBehindService(writeBehindService)
+                .build();
+    }
+
+    private static List<String> texts(final List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final var deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.springaiapp.domain.transformers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.ai.reader.TextReader;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.springaiapp.domain.joiners.BM25DocumentPostProcessor;
+import com.example.springaiapp.domain.service.impl.ChunkTermVectorServiceImpl;
+import com.example.springaiapp.domain.service.impl.CooccurrenceIndexServiceImpl;
+import com.example.springaiapp.domain.service.impl.TextAnalysisServiceImpl;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Сравнение движков расширения запросов на фиксированном наборе вопросов (evaluation/questions.tsv):
+ * без расширения, COOCCURRENCE (таблица PMI) и LLM (ExpansionQueryTransformer через Ollama)
+ * Для каждого движка считается recall@k - доля вопросов, для которых в top-k найден чанк
+ * из ожидаемого файла, и время расширения (среднее и p95)
+ * Поиск - BM25 по всем чанкам корпуса, чтобы сравнение не зависело от PostgreSQL и эмбеддингов
+ * Если Ollama недоступна, движок LLM пропускается
+ * Запуск:
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.example.springaiapp.domain.transformers.QueryExpansionEvaluation
+ *     [шаблон файлов корпуса] [ollama base-url] [модель]"
+ */
+public class QueryExpansionEvaluation {
+    private static final int TOP_K = 3;
+    private static final int CHUNK_SIZE = 250;
+
+    private record Question(String text, String expectedSource) {
+    }
+
+    private record Result(String engine, double recall, double meanMillis, double p95Millis) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final var corpusPattern = args.length > 0 ? args[0] : "classpath*:/evaluation/knowlegebase/*.txt";
+        final var ollamaBaseUrl = args.length > 1 ? args[1] : "http://localhost:11431";
+        final var model = args.length > 2 ? args[2] : "gemma3:4b-it-qat";
+
+        final var textAnalysisService = new TextAnalysisServiceImpl();
+        final var chunkTermVectorService = new ChunkTermVectorServiceImpl(textAnalysisService,
+                Caffeine.newBuilder().build());
+        final var chunks = loadChunks(corpusPattern, chunkTermVectorService);
+        final var questions = loadQuestions();
+        System.out.printf("Corpus: %d chunks, questions: %d%n", chunks.size(), questions.size());
+
+        final var cooccurrenceIndexService = new CooccurrenceIndexServiceImpl(textAnalysisService,
+                chunkTermVectorService, null);
+        ReflectionTestUtils.setField(cooccurrenceIndexService, "enabled", true);
+        ReflectionTestUtils.setField(cooccurrenceIndexService, "minCount", 2);
+        ReflectionTestUtils.setField(cooccurrenceIndexService, "maxTermsPerChunk", 64);
+        final var tableStart = System.nanoTime();
+        cooccurrenceIndexService.addDocuments(chunks);
+        System.out.printf("Cooccurrence table built in %.1f ms%n", (System.nanoTime() - tableStart) / 1e6);
+
+        final var retriever = BM25DocumentPostProcessor.builder()
+                .textAnalysisService(textAnalysisService)
+                .chunkTermVectorService(chunkTermVectorService)
+                .limit(TOP_K)
+                .build();
+
+        final var results = new ArrayList<Result>();
+        results.add(evaluate("NONE", it -> it, questions, chunks, retriever));
+        results.add(evaluate("COOCCURRENCE", CooccurrenceQueryTransformer.builder()
+                .cooccurrenceIndexService(cooccurrenceIndexService)
+                .build(), questions, chunks, retriever));
+        try {
+            final var chatModel = OllamaChatModel.builder()
+                    .ollamaApi(OllamaApi.builder().baseUrl(ollamaBaseUrl).build())
+                    .defaultOptions(OllamaOptions.builder().model(model).build())
+                    .build();
+            results.add(evaluate("LLM", ExpansionQueryTransformer.builder(chatModel).build(),
+                    questions, chunks, retriever));
+        } catch (RuntimeException e) {
+            System.out.printf("LLM engine skipped: %s%n", e.getMessage());
+        }
+
+        System.out.printf("%n%-14s %10s %14s %14s%n", "engine", "recall@" + TOP_K, "mean, ms", "p95, ms");
+        results.forEach(it -> System.out.printf("%-14s %10.2f %14.3f %14.3f%n",
+                it.engine(), it.recall(), it.meanMillis(), it.p95Millis()));
+    }
+
+    private static Result evaluate(final String engine, final QueryTransformer transformer,
+            final List<Question> questions, final List<Document> chunks, final BM25DocumentPostProcessor retriever) {
+        // прогрев: первый вызов включает загрузку анализаторов и JIT
+        transformer.transform(new Query(questions.get(0).text()));
+        var hits = 0;
+        final var latencies = new double[questions.size()];
+        for (var i = 0; i < questions.size(); i++) {
+            final var question = questions.get(i);
+            final var start = System.nanoTime();
+            final var expanded = transformer.transform(new Query(question.text()));
+            latencies[i] = (System.nanoTime() - start) / 1e6;
+            final var found = retriever.process(expanded, chunks);
+            if (found.stream().anyMatch(it -> question.expectedSource()
+                    .equals(it.getMetadata().get(TextReader.SOURCE_METADATA)))) {
+                hits++;
+            }
+            System.out.printf("[%s] %s -> %s%n", engine, question.text(), expanded.text());
+        }
+        Arrays.sort(latencies);
+        return new Result(engine,
+                (double) hits / questions.size(),
+                Arrays.stream(latencies).average().orElse(0.0),
+                latencies[(int) Math.ceil(latencies.length * 0.95) - 1]);
+    }
+
+    private static List<Document> loadChunks(final String pattern,
+            final ChunkTermVectorServiceImpl chunkTermVectorService) throws IOException {
+        final var splitter = TokenTextSplitter.builder().withChunkSize(CHUNK_SIZE).build();
+        final var chunks = new ArrayList<Document>();
+        for (final var resource : new PathMatchingResourcePatternResolver().getResources(pattern)) {
+            chunks.addAll(chunkTermVectorService.enrich(splitter.apply(new TextReader(resource).get())));
+        }
+        return chunks;
+    }
+
+    // формат: вопрос<TAB>имя файла корпуса, строки с # - комментарии
+    private static List<Question> loadQuestions() throws IOException {
+        final var resource = new ClassPathResource("evaluation/questions.tsv");
+        try (final var reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            return reader.lines()
+                    .filter(it -> !it.isBlank() && !it.startsWith("#"))
+                    .map(it -> it.split("\t"))
+                    .map(it -> new Question(it[0].strip(), it[1].strip()))
+                    .toList();
+        }
+    }
+}
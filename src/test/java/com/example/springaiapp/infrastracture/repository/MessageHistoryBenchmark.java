@@ -0,0 +1,87 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.sql.Timestamp;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Сравнение выборки истории чата: OFFSET (как было) и keyset по индексу (chat_id, created_at DESC, id DESC)
+ * Создается временный чат с заданным количеством сообщений (generate_series), для каждой глубины
+ * замеряется среднее время страницы через OFFSET и через курсор (created_at, id), чат удаляется после замера
+ * Запуск:
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.example.springaiapp.infrastracture.repository.MessageHistoryBenchmark
+ *     [jdbc url] [user] [password] [количество сообщений] [размер страницы]"
+ */
+public class MessageHistoryBenchmark {
+    private static final int ITERATIONS = 50;
+
+    private static final String OFFSET_QUERY = """
+            SELECT id, chat_id, role, content, created_at FROM message
+            WHERE chat_id = ? ORDER BY created_at DESC, id DESC OFFSET ? LIMIT ?
+            """;
+    private static final String KEYSET_QUERY = """
+            SELECT id, chat_id, role, content, created_at FROM message
+            WHERE chat_id = ? AND (created_at < ? OR (created_at = ? AND id < ?))
+            ORDER BY created_at DESC, id DESC LIMIT ?
+            """;
+
+    public static void main(String[] args) {
+        final var url = args.length > 0 ? args[0] : "jdbc:postgresql://localhost:5432/postgres";
+        final var user = args.length > 1 ? args[1] : "postgres";
+        final var password = args.length > 2 ? args[2] : "postgres";
+        final var messages = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+        final var pageSize = args.length > 4 ? Integer.parseInt(args[4]) : 50;
+
+        final var dataSource = new SingleConnectionDataSource(url, user, password, true);
+        final var jdbcTemplate = new JdbcTemplate(dataSource);
+        final var chatId = jdbcTemplate.queryForObject(
+                "INSERT INTO chats (title) VALUES ('history benchmark') RETURNING id", Long.class);
+        try {
+            System.out.printf("Messages: %d, page size: %d%n", messages, pageSize);
+            // по секунде между сообщениями, каждое десятое - в ту же секунду, что и предыдущее (совпадающий created_at)
+            jdbcTemplate.update("""
+                    INSERT INTO message (chat_id, role, content, created_at)
+                    SELECT ?, CASE WHEN i % 2 = 0 THEN 'USER' ELSE 'ASSISTANT' END, 'message ' || i,
+                           TIMESTAMP '2020-01-01' + (i - i / 10) * INTERVAL '1 second'
+                    FROM generate_series(1, ?) AS i
+                    """, chatId, messages);
+            jdbcTemplate.execute("ANALYZE message");
+
+            System.out.printf("%n%12s %16s %16s%n", "depth", "offset, ms", "keyset, ms");
+            for (var depth = 0; depth < messages; depth = depth == 0 ? 1000 : depth * 10) {
+                // курсор - последнее сообщение предыдущей страницы
+                final var cursor = depth == 0 ? null : jdbcTemplate.queryForMap(
+                        "SELECT id, created_at FROM message WHERE chat_id = ? ORDER BY created_at DESC, id DESC OFFSET ? LIMIT 1",
+                        chatId, depth - 1);
+                final var offsetDepth = depth;
+                final var offset = measure(() -> jdbcTemplate.queryForList(OFFSET_QUERY, chatId, offsetDepth, pageSize));
+                final var keyset = cursor == null
+                        ? measure(() -> jdbcTemplate.queryForList(
+                                "SELECT id, chat_id, role, content, created_at FROM message WHERE chat_id = ? ORDER BY created_at DESC, id DESC LIMIT ?",
+                                chatId, pageSize))
+                        : measure(() -> jdbcTemplate.queryForList(KEYSET_QUERY, chatId,
+                                (Timestamp) cursor.get("created_at"), (Timestamp) cursor.get("created_at"),
+                                cursor.get("id"), pageSize));
+                System.out.printf("%12d %16.3f %16.3f%n", depth, offset, keyset);
+            }
+        } finally {
+            jdbcTemplate.update("DELETE FROM message WHERE chat_id = ?", chatId);
+            jdbcTemplate.update("DELETE FROM chats WHERE id = ?", chatId);
+            dataSource.destroy();
+        }
+    }
+
+    private static double measure(final Runnable query) {
+        // прогрев плана запроса
+        for (var i = 0; i < 5; i++) {
+            query.run();
+        }
+        final var start = System.nanoTime();
+        for (var i = 0; i < ITERATIONS; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+}
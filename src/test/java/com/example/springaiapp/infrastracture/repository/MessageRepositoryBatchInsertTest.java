@@ -0,0 +1,65 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.stream.IntStream;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.springaiapp.infrastracture.entity.ChatEntity;
+import com.example.springaiapp.infrastracture.entity.MessageEntity;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * id из пула последовательности: saveAll сообщений выполняется JDBC batch'ами,
+ * а не отдельным INSERT на каждое сообщение
+ */
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class MessageRepositoryBatchInsertTest {
+    private static final int MESSAGES = 120;
+
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private ChatRepository chatRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void saveAllUsesBatchedInserts() {
+        final var chat = new ChatEntity();
+        chat.setTitle("batch");
+        chat.setCreatedAt(LocalDateTime.now());
+        final var chatId = chatRepository.saveAndFlush(chat).getId();
+        final var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        final var saved = messageRepository.saveAll(IntStream.range(0, MESSAGES)
+                .mapToObj(i -> {
+                    final var message = new MessageEntity();
+                    message.setChatId(chatId);
+                    message.setRole(i % 2 == 0 ? MessageType.USER : MessageType.ASSISTANT);
+                    message.setContent("message " + i);
+                    return message;
+                })
+                .toList());
+        entityManager.flush();
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(MESSAGES);
+        // ceil(120 / batch_size) INSERT'ов и несколько nextval вместо 120 INSERT'ов
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(8);
+        // в пределах экземпляра id растут в порядке сохранения (на это опирается окно памяти чата)
+        assertThat(saved).extracting(MessageEntity::getId).isSorted().doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.example.springaiapp.domain.model.VectorIndexMode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Сравнение режимов векторного индекса vector_store: размер индекса, задержка поиска и recall@k
+ * Эталон - точный поиск без индекса (enable_indexscan = off), запросы - случайные эмбеддинги из таблицы
+ * Недостающие индексы создаются на время замера и удаляются в конце, поэтому запускать
+ * стоит на копии базы разработчика, а не на рабочей
+ * hnsw.ef_search выставляется не меньше количества кандидатов, иначе первый проход обрежет выборку
+ * Запуск:
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.example.springaiapp.infrastracture.repository.VectorIndexModeBenchmark
+ *     [jdbc url] [user] [password] [количество запросов] [k]"
+ */
+public class VectorIndexModeBenchmark {
+    private static final int DIMENSIONS = 1024;
+    private static final int MATRYOSHKA_DIMENSIONS = 512;
+    private static final int RESCORE_MULTIPLIER = 4;
+
+    // выражения индексов совпадают с 008-vector-store-quantized-index.xml
+    private static final Map<VectorIndexMode, String> INDEXES = Map.of(
+            VectorIndexMode.FULL,
+            "vector_store_hnsw_index ON vector_store USING hnsw (embedding vector_cosine_ops)",
+            VectorIndexMode.HALFVEC,
+            "vector_store_halfvec_hnsw_index ON vector_store USING hnsw ((embedding::halfvec(%1$d)) halfvec_cosine_ops)"
+                    .formatted(DIMENSIONS),
+            VectorIndexMode.BINARY,
+            ("vector_store_binary_hnsw_index ON vector_store USING hnsw"
+                    + " ((binary_quantize(embedding)::bit(%1$d)) bit_hamming_ops)").formatted(DIMENSIONS),
+            VectorIndexMode.MATRYOSHKA,
+            ("vector_store_matryoshka_hnsw_index ON vector_store USING hnsw"
+                    + " ((subvector(embedding, 1, %1$d)::halfvec(%1$d)) halfvec_cosine_ops)")
+                    .formatted(MATRYOSHKA_DIMENSIONS));
+
+    private record Result(VectorIndexMode mode, long indexBytes, double recall, double meanMillis,
+            double p95Millis) {
+    }
+
+    public static void main(String[] args) {
+        final var url = args.length > 0 ? args[0] : "jdbc:postgresql://localhost:5432/postgres";
+        final var user = args.length > 1 ? args[1] : "postgres";
+        final var password = args.length > 2 ? args[2] : "postgres";
+        final var queries = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        final var k = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        final var dataSource = new SingleConnectionDataSource(url, user, password, true);
+        try {
+            final var jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+            final var repository = new VectorStoreRepository(jdbcTemplate, new ObjectMapper());
+            final var embeddings = jdbcTemplate.query(
+                    "SELECT embedding::text AS embedding FROM vector_store ORDER BY random() LIMIT :limit",
+                    Map.of("limit", queries),
+                    (rs, rowNum) -> PgVectorText.toArray(rs.getString("embedding")));
+            if (embeddings.isEmpty()) {
+                System.out.println("vector_store is empty, nothing to measure");
+                return;
+            }
+            System.out.printf("Queries: %d, k: %d%n", embeddings.size(), k);
+
+            final var groundTruth = exactSearch(jdbcTemplate, repository, embeddings, k);
+            jdbcTemplate.getJdbcTemplate().execute("SET hnsw.ef_search = " + Math.max(40, k * RESCORE_MULTIPLIER));
+
+            final var created = new ArrayList<String>();
+            final var results = new ArrayList<Result>();
+            try {
+                for (final var mode : VectorIndexMode.values()) {
+                    final var indexName = ensureIndex(jdbcTemplate, mode, created);
+                    final var indexBytes = jdbcTemplate.queryForObject(
+                            "SELECT pg_relation_size(CAST(:name AS regclass))",
+                            Map.of("name", indexName), Long.class);
+                    results.add(measure(repository, mode, indexBytes, embeddings, groundTruth, k));
+                }
+            } finally {
+                created.forEach(it -> jdbcTemplate.getJdbcTemplate().execute("DROP INDEX IF EXISTS " + it));
+            }
+
+            System.out.printf("%n%-12s %14s %10s %14s %14s%n", "mode", "index, MB", "recall@" + k,
+                    "mean, ms", "p95, ms");
+            results.forEach(it -> System.out.printf("%-12s %14.1f %10.3f %14.3f %14.3f%n",
+                    it.mode(), it.indexBytes() / 1024.0 / 1024.0, it.recall(), it.meanMillis(), it.p95Millis()));
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static List<List<String>> exactSearch(final NamedParameterJdbcTemplate jdbcTemplate,
+            final VectorStoreRepository repository, final List<float[]> embeddings, final int k) {
+        jdbcTemplate.getJdbcTemplate().execute("SET enable_indexscan = off");
+        try {
+            return embeddings.stream()
+                    .map(it -> ids(repository.searchByEmbedding(VectorIndexMode.FULL, it, DIMENSIONS,
+                            MATRYOSHKA_DIMENSIONS, k, k)))
+                    .toList();
+        } finally {
+            jdbcTemplate.getJdbcTemplate().execute("RESET enable_indexscan");
+        }
+    }
+
+    // возвращает имя индекса режима, созданные бенчмарком индексы запоминаются для удаления
+    private static String ensureIndex(final NamedParameterJdbcTemplate jdbcTemplate, final VectorIndexMode mode,
+            final List<String> created) {
+        final var definition = INDEXES.get(mode);
+        final var indexName = definition.substring(0, definition.indexOf(' '));
+        final var exists = jdbcTemplate.queryForObject("SELECT to_regclass(:name) IS NOT NULL",
+                Map.of("name", indexName), Boolean.class);
+        if (!Boolean.TRUE.equals(exists)) {
+            final var start = System.nanoTime();
+            jdbcTemplate.getJdbcTemplate().execute("CREATE INDEX " + definition);
+            created.add(indexName);
+            System.out.printf("Index %s built in %.1f s%n", indexName, (System.nanoTime() - start) / 1e9);
+        }
+        jdbcTemplate.getJdbcTemplate().execute("ANALYZE vector_store");
+        return indexName;
+    }
+
+    private static Result measure(final VectorStoreRepository repository, final VectorIndexMode mode,
+            final long indexBytes, final List<float[]> embeddings, final List<List<String>> groundTruth,
+            final int k) {
+        // прогрев: первые запросы читают страницы индекса с диска
+        embeddings.stream().limit(10).forEach(it -> search(repository, mode, it, k));
+        final var latencies = new double[embeddings.size()];
+        var recallSum = 0.0;
+        for (var i = 0; i < embeddings.size(); i++) {
+            final var start = System.nanoTime();
+            final var found = ids(search(repository, mode, embeddings.get(i), k));
+            latencies[i] = (System.nanoTime() - start) / 1e6;
+            final var expected = new HashSet<>(groundTruth.get(i));
+            recallSum += expected.isEmpty()
+                    ? 1.0
+                    : (double) found.stream().filter(expected::contains).count() / expected.size();
+        }
+        Arrays.sort(latencies);
+        return new Result(mode, indexBytes,
+                recallSum / embeddings.size(),
+                Arrays.stream(latencies).average().orElse(0.0),
+                latencies[(int) Math.ceil(latencies.length * 0.95) - 1]);
+    }
+
+    private static List<Document> search(final VectorStoreRepository repository, final VectorIndexMode mode,
+            final float[] embedding, final int k) {
+        return repository.searchByEmbedding(mode, embedding, DIMENSIONS, MATRYOSHKA_DIMENSIONS,
+                k * RESCORE_MULTIPLIER, k);
+    }
+
+    private static List<String> ids(final List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+}
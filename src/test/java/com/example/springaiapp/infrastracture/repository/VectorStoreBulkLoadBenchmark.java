@@ -0,0 +1,130 @@
+package com.example.springaiapp.infrastracture.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Сравнение скорости записи в vector_store: batch insert (saveAll) и COPY (FORMAT BINARY) через
+ * временную таблицу (copyAll), для COPY - также с удалением HNSW индекса и построением его после загрузки
+ * Чанки - случайный текст и случайные эмбеддинги, каждый пакет пишется в своей транзакции, как в конвейере
+ * Записанные строки удаляются после каждого замера
+ * Замер без индекса выполняется только на пустой vector_store (индекс строится по всей таблице),
+ * запускать стоит на копии базы разработчика, а не на рабочей
+ * Запуск:
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.example.springaiapp.infrastracture.repository.VectorStoreBulkLoadBenchmark
+ *     [jdbc url] [user] [password] [количество строк] [размер пакета]"
+ */
+public class VectorStoreBulkLoadBenchmark {
+    private static final int DIMENSIONS = 1024;
+    private static final int TEXT_LENGTH = 1500;
+
+    public static void main(String[] args) {
+        final var url = args.length > 0 ? args[0] : "jdbc:postgresql://localhost:5432/postgres";
+        final var user = args.length > 1 ? args[1] : "postgres";
+        final var password = args.length > 2 ? args[2] : "postgres";
+        final var rows = args.length > 3 ? Integer.parseInt(args[3]) : 20000;
+        final var batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        final var dataSource = new SingleConnectionDataSource(url, user, password, true);
+        dataSource.setAutoCommit(false);
+        try {
+            final var jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+            final var repository = new VectorStoreRepository(jdbcTemplate, new ObjectMapper());
+            final var transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            final var batches = generate(rows, batchSize);
+            System.out.printf("Rows: %d, batch size: %d, dimensions: %d%n", rows, batchSize, DIMENSIONS);
+
+            // прогрев соединения и планов запросов
+            final var warmup = List.of(batches.getFirst());
+            measure("warmup", warmup, transactionTemplate, repository, repository::saveAll);
+            measure("warmup", warmup, transactionTemplate, repository, repository::copyAll);
+
+            System.out.printf("%n%-28s %12s %12s%n", "mode", "total, ms", "rows/s");
+            measure("batch insert", batches, transactionTemplate, repository, repository::saveAll);
+            measure("copy", batches, transactionTemplate, repository, repository::copyAll);
+            if (repository.isEmpty()) {
+                final var indexes = transactionTemplate.execute(status -> repository.dropVectorIndexes());
+                try {
+                    measure("copy, index after load", batches, transactionTemplate, repository,
+                            (documents, embeddings) -> {
+                                repository.copyAll(documents, embeddings);
+                                if (documents == batches.getLast().documents()) {
+                                    repository.createIndexes(indexes);
+                                }
+                            });
+                } finally {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        repository.dropVectorIndexes();
+                        repository.createIndexes(indexes);
+                    });
+                }
+            } else {
+                System.out.println("vector_store is not empty, index rebuild is not measured");
+            }
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private record Batch(List<Document> documents, List<float[]> embeddings) {
+    }
+
+    private static List<Batch> generate(final int rows, final int batchSize) {
+        final var random = new Random(42);
+        final var batches = new ArrayList<Batch>();
+        for (var from = 0; from < rows; from += batchSize) {
+            final var size = Math.min(batchSize, rows - from);
+            final var documents = new ArrayList<Document>(size);
+            final var embeddings = new ArrayList<float[]>(size);
+            for (var i = 0; i < size; i++) {
+                final var text = new StringBuilder(TEXT_LENGTH);
+                while (text.length() < TEXT_LENGTH) {
+                    text.append("term").append(random.nextInt(5000)).append(' ');
+                }
+                documents.add(Document.builder()
+                        .id(UUID.randomUUID().toString())
+                        .text(text.toString())
+                        .metadata(Map.of("source", "benchmark-" + (from + i) / 100 + ".txt"))
+                        .build());
+                final var embedding = new float[DIMENSIONS];
+                for (var d = 0; d < DIMENSIONS; d++) {
+                    embedding[d] = (float) random.nextGaussian();
+                }
+                embeddings.add(embedding);
+            }
+            batches.add(new Batch(documents, embeddings));
+        }
+        return batches;
+    }
+
+    private static void measure(final String mode, final List<Batch> batches,
+            final TransactionTemplate transactionTemplate, final VectorStoreRepository repository,
+            final BiConsumer<List<Document>, List<float[]>> writer) {
+        final var rows = batches.stream().mapToInt(it -> it.documents().size()).sum();
+        final var start = System.nanoTime();
+        try {
+            batches.forEach(it -> transactionTemplate.executeWithoutResult(
+                    status -> writer.accept(it.documents(), it.embeddings())));
+            final var millis = (System.nanoTime() - start) / 1e6;
+            if (!mode.equals("warmup")) {
+                System.out.printf("%-28s %12.0f %12.0f%n", mode, millis, rows / (millis / 1000));
+            }
+        } finally {
+            transactionTemplate.executeWithoutResult(status -> batches.forEach(
+                    it -> repository.deleteAllByIds(it.documents().stream().map(Document::getId).toList())));
+        }
+    }
+}